@@ -0,0 +1,118 @@
+package gitlet;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+
+/** Runner of a script of gitlet commands against one repository, all in
+ *  one process.  Each line of a script is one command, its operands
+ *  separated by blanks; an operand holding blanks is enclosed in double
+ *  quotes, as in commit "added wug".  Blank lines and lines starting with
+ *  # are skipped.  The repository state is read once and kept in memory
+ *  from one command to the next, and is only written at the end of the
+ *  script and at each line holding just the word checkpoint.  A command
+ *  that fails prints its message, as it would on the command line, and
+ *  the script goes on.  If a daemon serves the repository, each command
+ *  is passed on to it instead.
+ *  @author Keshav Sharma
+ */
+class Batch {
+
+    /** Line that writes the state changed so far. */
+    static final String CHECKPOINT = "checkpoint";
+
+    /** Start of a comment line. */
+    static final String COMMENT = "#";
+
+    /** Runner of scripts for REPOSITORY, printing to OUT.
+     * @param repository : Repository the commands act on.
+     * @param out : Stream for the output of commands.
+     * */
+    Batch(Repository repository, PrintStream out) {
+        _repository = repository;
+        _out = out;
+        repository.output(out);
+    }
+
+    /** Runs every command of SCRIPT and returns the number run.
+     * @param script : Reader of the script's lines.
+     * */
+    int run(BufferedReader script) throws IOException {
+        int count = 0;
+        try {
+            String line;
+            while ((line = script.readLine()) != null) {
+                String[] args = split(line);
+                if (args.length == 0 || args[0].startsWith(COMMENT)) {
+                    continue;
+                } else if (args.length == 1 && args[0].equals(CHECKPOINT)) {
+                    _repository.flush();
+                    continue;
+                }
+                _out.flush();
+                if (!Daemon.forward(_repository.dir(), args)) {
+                    execute(args);
+                }
+                count += 1;
+            }
+        } finally {
+            _repository.flush();
+            _out.flush();
+        }
+        return count;
+    }
+
+    /** Runs the command described by ARGS, printing the message of any
+     * error.  As a failed command may leave the state in memory half
+     * changed, what it saved is written and the rest is read again, as if
+     * it had been run by a process of its own.
+     * @param args : Command name followed by its operands.
+     * */
+    private void execute(String... args) throws IOException {
+        try {
+            _repository.execute(args);
+        } catch (GitletException excp) {
+            _out.println(excp.getMessage());
+            _repository.flush();
+            _repository.discardState();
+        }
+    }
+
+    /** Returns the words of LINE, where a double-quoted part of a word
+     * may hold blanks.
+     * @param line : Line of a script.
+     * */
+    static String[] split(String line) {
+        ArrayList<String> words = new ArrayList<String>();
+        StringBuilder word = new StringBuilder();
+        boolean inWord = false, quoted = false;
+        for (int i = 0; i < line.length(); i += 1) {
+            char c = line.charAt(i);
+            if (c == '"') {
+                quoted = !quoted;
+                inWord = true;
+            } else if (Character.isWhitespace(c) && !quoted) {
+                if (inWord) {
+                    words.add(word.toString());
+                    word.setLength(0);
+                    inWord = false;
+                }
+            } else {
+                word.append(c);
+                inWord = true;
+            }
+        }
+        if (inWord) {
+            words.add(word.toString());
+        }
+        return words.toArray(new String[0]);
+    }
+
+    /** Repository the commands act on. */
+    private final Repository _repository;
+
+    /** Stream for the output of commands. */
+    private final PrintStream _out;
+
+}
@@ -0,0 +1,256 @@
+package gitlet;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/** Compressed set of non-negative ints, in the style of a Roaring bitmap.
+ *  The ints are grouped into chunks by their high 16 bits, and only the
+ *  chunks holding at least one int are kept, each as 1024 words of bits.
+ *  When written out, each chunk takes whichever of three encodings is
+ *  smallest: a sorted array of its low 16 bits, its raw words, or a list
+ *  of runs of consecutive ints.  Sets of commit positions are mostly long
+ *  runs, so they are stored in a few bytes per chunk, while the word form
+ *  in memory makes union, intersection and difference one pass of word
+ *  operations over the chunks the sets share.
+ *  @author Keshav Sharma
+ */
+class Bitmap {
+
+    /** Number of ints in one chunk. */
+    static final int CHUNK_SIZE = 1 << 16;
+
+    /** Number of words in one chunk. */
+    static final int WORDS = CHUNK_SIZE / Long.SIZE;
+
+    /** Encoding of a chunk as a sorted array of low bits. */
+    static final byte ARRAY = 'a';
+
+    /** Encoding of a chunk as its raw words. */
+    static final byte WORDS_KIND = 'w';
+
+    /** Encoding of a chunk as runs of consecutive ints. */
+    static final byte RUNS = 'r';
+
+    /** An empty set. */
+    Bitmap() {
+        _keys = new int[0];
+        _chunks = new long[0][];
+    }
+
+    /** Adds N to this set.
+     * @param n : A non-negative int.
+     * */
+    void add(int n) {
+        long[] chunk = chunk(n >>> 16, true);
+        chunk[(n & 0xffff) >>> 6] |= 1L << n;
+    }
+
+    /** Returns true iff N is in this set.
+     * @param n : A non-negative int.
+     * */
+    boolean contains(int n) {
+        long[] chunk = chunk(n >>> 16, false);
+        return chunk != null && (chunk[(n & 0xffff) >>> 6] & (1L << n)) != 0;
+    }
+
+    /** Adds every member of OTHER to this set.
+     * @param other : Another set.
+     * */
+    void or(Bitmap other) {
+        for (int k = 0; k < other._keys.length; k += 1) {
+            long[] chunk = chunk(other._keys[k], true);
+            long[] words = other._chunks[k];
+            for (int w = 0; w < WORDS; w += 1) {
+                chunk[w] |= words[w];
+            }
+        }
+    }
+
+    /** Returns the number of members of this set. */
+    int cardinality() {
+        int result = 0;
+        for (long[] chunk : _chunks) {
+            for (long word : chunk) {
+                result += Long.bitCount(word);
+            }
+        }
+        return result;
+    }
+
+    /** Returns the number of members of this set that are not in OTHER.
+     * @param other : Another set.
+     * */
+    int andNotCardinality(Bitmap other) {
+        int result = 0;
+        for (int k = 0; k < _keys.length; k += 1) {
+            long[] mask = other.chunk(_keys[k], false);
+            for (int w = 0; w < WORDS; w += 1) {
+                long word = _chunks[k][w];
+                result += Long.bitCount(mask == null ? word
+                                        : word & ~mask[w]);
+            }
+        }
+        return result;
+    }
+
+    /** Writes this set to OUT in its compressed form. */
+    void write(ByteArrayOutputStream out) {
+        CommitCodec.writeVarint(out, _keys.length);
+        for (int k = 0; k < _keys.length; k += 1) {
+            long[] chunk = _chunks[k];
+            int count = 0, runs = 0;
+            for (int w = 0; w < WORDS; w += 1) {
+                count += Long.bitCount(chunk[w]);
+                long previous = w == 0 ? 0 : chunk[w - 1] >>> (Long.SIZE - 1);
+                runs += Long.bitCount(chunk[w] & ~(chunk[w] << 1 | previous));
+            }
+            out.write(_keys[k] >>> 8);
+            out.write(_keys[k]);
+            if (4 * runs < Math.min(2 * count, WORDS * Long.BYTES)) {
+                out.write(RUNS);
+                CommitCodec.writeVarint(out, runs);
+                for (int i = next(chunk, 0); i >= 0; ) {
+                    int end = i;
+                    while (end + 1 < CHUNK_SIZE && bit(chunk, end + 1)) {
+                        end += 1;
+                    }
+                    writeChar(out, i);
+                    writeChar(out, end - i);
+                    i = end + 1 < CHUNK_SIZE ? next(chunk, end + 1) : -1;
+                }
+            } else if (2 * count < WORDS * Long.BYTES) {
+                out.write(ARRAY);
+                CommitCodec.writeVarint(out, count);
+                for (int i = next(chunk, 0); i >= 0;
+                     i = i + 1 < CHUNK_SIZE ? next(chunk, i + 1) : -1) {
+                    writeChar(out, i);
+                }
+            } else {
+                out.write(WORDS_KIND);
+                ByteBuffer words = ByteBuffer.allocate(WORDS * Long.BYTES);
+                words.asLongBuffer().put(chunk);
+                out.writeBytes(words.array());
+            }
+        }
+    }
+
+    /** Returns the set written by write at the position of IN, leaving IN
+     * just past it.
+     * @param in : Buffer holding the compressed set.
+     * */
+    static Bitmap read(ByteBuffer in) {
+        Bitmap result = new Bitmap();
+        int size = CommitCodec.readVarint(in);
+        result._keys = new int[size];
+        result._chunks = new long[size][];
+        for (int k = 0; k < size; k += 1) {
+            result._keys[k] = in.getChar();
+            long[] chunk = new long[WORDS];
+            result._chunks[k] = chunk;
+            byte kind = in.get();
+            if (kind == RUNS) {
+                for (int r = CommitCodec.readVarint(in); r > 0; r -= 1) {
+                    int start = in.getChar();
+                    setRange(chunk, start, start + in.getChar() + 1);
+                }
+            } else if (kind == ARRAY) {
+                for (int n = CommitCodec.readVarint(in); n > 0; n -= 1) {
+                    int i = in.getChar();
+                    chunk[i >>> 6] |= 1L << i;
+                }
+            } else if (kind == WORDS_KIND) {
+                in.asLongBuffer().get(chunk);
+                in.position(in.position() + WORDS * Long.BYTES);
+            } else {
+                throw Utils.error("Corrupt bitmap.");
+            }
+        }
+        return result;
+    }
+
+    /** Returns the words of the chunk with high bits KEY, adding an empty
+     * one if it is missing and CREATE, or else returning null.
+     * @param key : High 16 bits of the ints in the chunk.
+     * @param create : True iff a missing chunk should be added.
+     * */
+    private long[] chunk(int key, boolean create) {
+        int k = Arrays.binarySearch(_keys, key);
+        if (k >= 0) {
+            return _chunks[k];
+        } else if (!create) {
+            return null;
+        }
+        k = -k - 1;
+        int[] keys = new int[_keys.length + 1];
+        long[][] chunks = new long[_chunks.length + 1][];
+        System.arraycopy(_keys, 0, keys, 0, k);
+        System.arraycopy(_chunks, 0, chunks, 0, k);
+        System.arraycopy(_keys, k, keys, k + 1, _keys.length - k);
+        System.arraycopy(_chunks, k, chunks, k + 1, _chunks.length - k);
+        keys[k] = key;
+        chunks[k] = new long[WORDS];
+        _keys = keys;
+        _chunks = chunks;
+        return chunks[k];
+    }
+
+    /** Returns true iff bit I of CHUNK is set.
+     * @param chunk : Words of a chunk.
+     * @param i : Low 16 bits of an int.
+     * */
+    private static boolean bit(long[] chunk, int i) {
+        return (chunk[i >>> 6] & (1L << i)) != 0;
+    }
+
+    /** Returns the first set bit of CHUNK at or after I, or -1.
+     * @param chunk : Words of a chunk.
+     * @param i : Low 16 bits of an int.
+     * */
+    private static int next(long[] chunk, int i) {
+        int w = i >>> 6;
+        long word = chunk[w] & (-1L << i);
+        while (word == 0) {
+            w += 1;
+            if (w == WORDS) {
+                return -1;
+            }
+            word = chunk[w];
+        }
+        return w * Long.SIZE + Long.numberOfTrailingZeros(word);
+    }
+
+    /** Sets bits FROM .. TO-1 of CHUNK.
+     * @param chunk : Words of a chunk.
+     * @param from : First bit to set.
+     * @param to : One past the last bit to set.
+     * */
+    private static void setRange(long[] chunk, int from, int to) {
+        for (int i = from; i < to; ) {
+            int w = i >>> 6;
+            int end = Math.min(to, (w + 1) * Long.SIZE);
+            long mask = -1L << i;
+            if (end < (w + 1) * Long.SIZE) {
+                mask &= -1L >>> (Long.SIZE - (end & (Long.SIZE - 1)));
+            }
+            chunk[w] |= mask;
+            i = end;
+        }
+    }
+
+    /** Writes the low 16 bits of C to OUT, high byte first.
+     * @param out : Stream to write to.
+     * @param c : Value to write.
+     * */
+    private static void writeChar(ByteArrayOutputStream out, int c) {
+        out.write(c >>> 8);
+        out.write(c);
+    }
+
+    /** High 16 bits of the ints of each chunk, in increasing order. */
+    private int[] _keys;
+
+    /** Words of each chunk, parallel to _keys. */
+    private long[][] _chunks;
+
+}
@@ -0,0 +1,248 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.stream.Stream;
+
+/** Incremental checkout, which turns the working files of one commit into
+ *  those of another.  The trees of the two commits are diffed first, so
+ *  only the files that were added, changed or removed between them are
+ *  written or deleted, along with any file the commits agree on but whose
+ *  working copy, judged by the stat cache, no longer matches.  Every other
+ *  file is left untouched, keeping its modification time.  The files to
+ *  write are copied out of the object store in parallel on a pool of
+ *  WRITERS threads, as copying is bound by the file system rather than
+ *  the processor.  Files are deleted before any is written, and the
+ *  directories left empty are removed, so a file may replace a directory
+ *  and a directory a file.  Nothing is touched if an untracked file that
+ *  is not ignored is in the way, whether at the path of a new file, at
+ *  the path of one of its directories, or inside a directory at its path.
+ *  @author Keshav Sharma
+ */
+class Checkout {
+
+    /** Number of threads writing files. */
+    static final int WRITERS = 8;
+
+    /** Largest number of files one task writes without splitting. */
+    static final int THRESHOLD = 4;
+
+    /** Checkout of the objects of STORE into the working directory
+     * WORKDIR, whose files are cached in STAT.
+     * @param store : Object store holding the file contents.
+     * @param stat : Stat cache of the working files.
+     * @param workDir : Working directory.
+     * */
+    Checkout(ObjectStore store, StatCache stat, File workDir) {
+        _store = store;
+        _stat = stat;
+        _workDir = workDir;
+    }
+
+    /** Replaces the working files of commit FROM with those of commit TO,
+     * and returns the number of files written or deleted.
+     * @param from : Commit whose files are in the working directory.
+     * @param to : Commit to check out.
+     * */
+    int run(Commit from, Commit to) {
+        HashMap<String, String> source = from.filesinCommit();
+        HashMap<String, String> target = to.filesinCommit();
+        HashMap<String, String[]> changes = new HashMap<String, String[]>();
+        Tree.diff(_store, from.tree(), to.tree(), changes);
+        ArrayList<String> unchanged = new ArrayList<String>();
+        for (String path : target.keySet()) {
+            if (!changes.containsKey(path)) {
+                unchanged.add(path);
+            } else if (!source.containsKey(path) && inTheWay(path, source)) {
+                throw new UntrackedFileException("There is an untracked "
+                        + "file in the way; delete it or add it first.");
+            }
+        }
+        ArrayList<String> writes = new ArrayList<String>();
+        ArrayList<String> deletes = new ArrayList<String>();
+        for (Map.Entry<String, String[]> change : changes.entrySet()) {
+            if (change.getValue()[1] == null) {
+                deletes.add(change.getKey());
+            } else {
+                writes.add(change.getKey());
+            }
+        }
+        HashMap<String, String> working =
+            _stat.hashAll(unchanged, new Hasher(null));
+        for (String path : unchanged) {
+            if (!target.get(path).equals(working.get(path))) {
+                writes.add(path);
+            }
+        }
+        for (String path : deletes) {
+            file(path).delete();
+            prune(file(path).getParentFile());
+        }
+        for (String path : writes) {
+            File file = file(path);
+            if (file.isDirectory() && source.containsKey(path)) {
+                throw Utils.error("Cannot overwrite directory %s.", path);
+            } else if (file.isDirectory()) {
+                removeDirectory(file);
+            }
+            file.getParentFile().mkdirs();
+        }
+        write(writes, target);
+        for (String path : writes) {
+            _stat.update(path, target.get(path));
+        }
+        return writes.size() + deletes.size();
+    }
+
+    /** Returns true iff an untracked file that is not ignored stands in
+     * the way of writing the new file PATH: at PATH itself, at the path of
+     * a directory above it, or inside a directory at PATH.  The tracked
+     * files are those of SOURCE, which the checkout deletes or replaces.
+     * @param path : Path of a file that is not in SOURCE.
+     * @param source : Map from path to blob id of the tracked files.
+     * */
+    private boolean inTheWay(String path, Map<String, String> source) {
+        for (int i = path.indexOf('/'); i > 0; i = path.indexOf('/', i + 1)) {
+            String dir = path.substring(0, i);
+            if (file(dir).isFile() && !source.containsKey(dir)
+                    && !ignored(dir)) {
+                return true;
+            }
+        }
+        File file = file(path);
+        if (file.isFile()) {
+            return !ignored(path);
+        } else if (!file.isDirectory()) {
+            return false;
+        }
+        for (String name : new FileScanner(_workDir, ignore()).files(file)) {
+            if (!source.containsKey(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Deletes DIR and each directory above it, up to the working
+     * directory, that is left empty.
+     * @param dir : Directory that held a deleted file.
+     * */
+    private void prune(File dir) {
+        File root = _workDir.getAbsoluteFile();
+        File d = dir.getAbsoluteFile();
+        while (!d.equals(root) && d.delete()) {
+            d = d.getParentFile();
+        }
+    }
+
+    /** Deletes DIR and everything beneath it, which the checkout has
+     * found to be only ignored files.
+     * @param dir : Directory at the path of a new file.
+     * */
+    private static void removeDirectory(File dir) {
+        try (Stream<Path> paths = Files.walk(dir.toPath())) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile)
+                .forEach(File::delete);
+        } catch (IOException excp) {
+            throw Utils.error("Cannot delete %s: %s", dir,
+                    excp.getMessage());
+        }
+    }
+
+    /** Writes each of PATHS with its blob in FILES.
+     * @param paths : Paths of the files to write.
+     * @param files : Map from path to blob id.
+     * */
+    private void write(List<String> paths, Map<String, String> files) {
+        if (paths.size() <= THRESHOLD) {
+            new Write(paths, files).compute();
+            return;
+        }
+        ForkJoinPool pool = new ForkJoinPool(WRITERS);
+        try {
+            pool.invoke(new Write(paths, files));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /** Returns true iff working file PATH is ignored, and so may be
+     * overwritten even though it is untracked.  The ignore file is only
+     * read when a checkout finds an untracked file in its way.
+     * @param path : Path of the file relative to the working directory.
+     * */
+    private boolean ignored(String path) {
+        return ignore().ignored(path, false);
+    }
+
+    /** Returns the matcher of the ignored files, reading it on first
+     * use. */
+    private IgnoreMatcher ignore() {
+        if (_ignore == null) {
+            _ignore = IgnoreMatcher.read(_workDir);
+        }
+        return _ignore;
+    }
+
+    /** Returns working file PATH.
+     * @param path : Path of the file relative to the working directory.
+     * */
+    private File file(String path) {
+        return Utils.join(_workDir, path);
+    }
+
+    /** Task writing a list of working files. */
+    private class Write extends RecursiveAction {
+
+        /** Task writing each of PATHS with its blob in FILES.
+         * @param paths : Paths of the files to write.
+         * @param files : Map from path to blob id.
+         * */
+        Write(List<String> paths, Map<String, String> files) {
+            _paths = paths;
+            _files = files;
+        }
+
+        @Override
+        protected void compute() {
+            if (_paths.size() > THRESHOLD) {
+                int mid = _paths.size() / 2;
+                invokeAll(new Write(_paths.subList(0, mid), _files),
+                          new Write(_paths.subList(mid, _paths.size()),
+                                    _files));
+                return;
+            }
+            for (String path : _paths) {
+                _store.copyTo(_files.get(path), file(path));
+            }
+        }
+
+        /** Paths of the files to write. */
+        private final List<String> _paths;
+
+        /** Map from path to blob id. */
+        private final Map<String, String> _files;
+    }
+
+    /** Object store holding the file contents. */
+    private final ObjectStore _store;
+
+    /** Stat cache of the working files. */
+    private final StatCache _stat;
+
+    /** Working directory. */
+    private final File _workDir;
+
+    /** Matcher of the ignored files, once read. */
+    private IgnoreMatcher _ignore;
+
+}
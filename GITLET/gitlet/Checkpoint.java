@@ -0,0 +1,110 @@
+package gitlet;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/** Crash-safe update of a group of state files in a .gitlet directory.
+ *  The new contents of every file are first written to a journal, which is
+ *  flushed to disk and renamed into place in one step.  Only then are the
+ *  files themselves replaced, each by writing a temporary file and renaming
+ *  it.  If the process dies part way, the journal is still there and the
+ *  next reader replays it, so the group is applied entirely or not at all.
+ *  @author Keshav Sharma
+ */
+class Checkpoint {
+
+    /** Checkpoints of the state files under the .gitlet directory DIR.
+     * @param dir : The .gitlet directory.
+     * */
+    Checkpoint(File dir) {
+        _dir = dir;
+        _journal = Utils.join(dir, "checkpoint");
+    }
+
+    /** Replaces each file named by a key of FILES, relative to the .gitlet
+     * directory, with the corresponding contents.
+     * @param files : Relative file names to new contents.
+     * */
+    void commit(Map<String, byte[]> files) {
+        if (files.isEmpty()) {
+            return;
+        }
+        File temp = Utils.join(_dir, "checkpoint.tmp");
+        try {
+            try (FileOutputStream raw = new FileOutputStream(temp)) {
+                DataOutputStream out = new DataOutputStream(raw);
+                out.writeInt(files.size());
+                for (Map.Entry<String, byte[]> entry : files.entrySet()) {
+                    out.writeUTF(entry.getKey());
+                    out.writeInt(entry.getValue().length);
+                    out.write(entry.getValue());
+                }
+                out.flush();
+                raw.getFD().sync();
+            }
+            Files.move(temp.toPath(), _journal.toPath(),
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException excp) {
+            throw Utils.error("Cannot write checkpoint: %s",
+                    excp.getMessage());
+        }
+        apply(files);
+    }
+
+    /** Finishes a checkpoint that was interrupted after its journal was
+     * written.  Does nothing if there is no such checkpoint. */
+    void recover() {
+        if (!_journal.isFile()) {
+            return;
+        }
+        LinkedHashMap<String, byte[]> files =
+                new LinkedHashMap<String, byte[]>();
+        try (DataInputStream in =
+                new DataInputStream(new FileInputStream(_journal))) {
+            for (int n = in.readInt(); n > 0; n -= 1) {
+                String name = in.readUTF();
+                byte[] contents = new byte[in.readInt()];
+                in.readFully(contents);
+                files.put(name, contents);
+            }
+        } catch (IOException excp) {
+            throw Utils.error("Cannot read checkpoint: %s",
+                    excp.getMessage());
+        }
+        apply(files);
+    }
+
+    /** Writes FILES in place, then removes the journal.
+     * @param files : Relative file names to new contents.
+     * */
+    private void apply(Map<String, byte[]> files) {
+        try {
+            for (Map.Entry<String, byte[]> entry : files.entrySet()) {
+                File target = Utils.join(_dir, entry.getKey());
+                File temp = Utils.join(_dir, entry.getKey() + ".tmp");
+                Utils.writeContents(temp, entry.getValue());
+                Files.move(temp.toPath(), target.toPath(),
+                        StandardCopyOption.ATOMIC_MOVE);
+            }
+            Files.delete(_journal.toPath());
+        } catch (IOException excp) {
+            throw Utils.error("Cannot apply checkpoint: %s",
+                    excp.getMessage());
+        }
+    }
+
+    /** The .gitlet directory. */
+    private final File _dir;
+
+    /** Journal of the checkpoint being applied. */
+    private final File _journal;
+
+}
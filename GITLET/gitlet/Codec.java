@@ -0,0 +1,177 @@
+package gitlet;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/** Compression codec for stored objects.  Each stored object starts with
+ *  the id byte of the codec that wrote it, so objects written with
+ *  different codecs, or levels, can be read side by side.  The codec for a
+ *  new object is chosen from a sample of its first bytes: small objects
+ *  and samples that look already compressed, judged by the entropy of
+ *  their byte values, are stored as they are, and everything else is
+ *  deflated at the configured level.
+ *  @author Keshav Sharma
+ */
+abstract class Codec {
+
+    /** Id byte of objects stored uncompressed. */
+    static final byte NONE_ID = 0;
+
+    /** Id byte of deflated objects. */
+    static final byte DEFLATE_ID = 1;
+
+    /** Deflate level used unless the configuration sets another. */
+    static final int DEFAULT_LEVEL = 6;
+
+    /** Number of leading bytes of an object sampled to choose its codec. */
+    static final int SAMPLE_SIZE = 4096;
+
+    /** Size in bytes below which objects are not worth compressing. */
+    static final int MIN_SIZE = 128;
+
+    /** Size of the buffer between a deflater and its output. */
+    static final int STREAM_BUFFER_SIZE = 8192;
+
+    /** Entropy in bits per byte above which a sample is taken to be
+     * compressed already. */
+    static final double ENTROPY_LIMIT = 7.5;
+
+    /** Codec storing objects as they are. */
+    static final Codec NONE = new Codec() {
+        @Override
+        byte id() {
+            return NONE_ID;
+        }
+
+        @Override
+        String name() {
+            return "none";
+        }
+
+        @Override
+        OutputStream compress(OutputStream out) {
+            return out;
+        }
+
+        @Override
+        InputStream decompress(InputStream in) {
+            return in;
+        }
+    };
+
+    /** Returns the id byte written before objects of this codec. */
+    abstract byte id();
+
+    /** Returns the name of this codec, for reports. */
+    abstract String name();
+
+    /** Returns a stream that writes to OUT the compressed form of what is
+     * written to it.  Closing it closes OUT.
+     * @param out : Stream for the compressed bytes.
+     * */
+    abstract OutputStream compress(OutputStream out) throws IOException;
+
+    /** Returns a stream of the bytes whose compressed form is read from
+     * IN.  Closing it closes IN.
+     * @param in : Stream of compressed bytes.
+     * */
+    abstract InputStream decompress(InputStream in) throws IOException;
+
+    /** Returns the codec deflating at LEVEL, from 1 (fastest) to 9
+     * (smallest).
+     * @param level : Deflate level.
+     * */
+    static Codec deflate(int level) {
+        return new Codec() {
+            @Override
+            byte id() {
+                return DEFLATE_ID;
+            }
+
+            @Override
+            String name() {
+                return "deflate-" + level;
+            }
+
+            @Override
+            OutputStream compress(OutputStream out) {
+                Deflater deflater = new Deflater(level);
+                return new DeflaterOutputStream(out, deflater,
+                                                STREAM_BUFFER_SIZE) {
+                    @Override
+                    public void close() throws IOException {
+                        try {
+                            super.close();
+                        } finally {
+                            deflater.end();
+                        }
+                    }
+                };
+            }
+
+            @Override
+            InputStream decompress(InputStream in) {
+                return new InflaterInputStream(in);
+            }
+        };
+    }
+
+    /** Returns the codec that reads objects starting with id byte ID.
+     * @param id : First byte of a stored object.
+     * */
+    static Codec forId(byte id) {
+        switch (id) {
+        case NONE_ID:
+            return NONE;
+        case DEFLATE_ID:
+            return deflate(DEFAULT_LEVEL);
+        default:
+            throw Utils.error("Unknown object codec %d.", id);
+        }
+    }
+
+    /** Returns the codec for an object of SIZE bytes whose first LENGTH
+     * bytes are SAMPLE, compressing at LEVEL, where level 0 stores every
+     * object uncompressed.
+     * @param sample : Leading bytes of the object.
+     * @param length : Number of bytes of SAMPLE to look at.
+     * @param size : Size of the whole object.
+     * @param level : Configured deflate level.
+     * */
+    static Codec choose(byte[] sample, int length, long size, int level) {
+        if (level == 0 || size < MIN_SIZE
+                || entropy(sample, Math.min(length, SAMPLE_SIZE))
+                   > ENTROPY_LIMIT) {
+            return NONE;
+        }
+        return deflate(level);
+    }
+
+    /** Returns the Shannon entropy, in bits per byte, of the first LENGTH
+     * bytes of DATA.
+     * @param data : Bytes to measure.
+     * @param length : Number of bytes to measure.
+     * */
+    static double entropy(byte[] data, int length) {
+        if (length == 0) {
+            return 0;
+        }
+        int[] counts = new int[1 << Byte.SIZE];
+        for (int i = 0; i < length; i += 1) {
+            counts[data[i] & 0xff] += 1;
+        }
+        double result = 0;
+        for (int count : counts) {
+            if (count > 0) {
+                double p = (double) count / length;
+                result -= p * Math.log(p);
+            }
+        }
+        return result / Math.log(2);
+    }
+
+}
@@ -0,0 +1,132 @@
+package gitlet;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.Deflater;
+
+/** Benchmark of the object codecs on the files of a sample repository.
+ *  Every plain file under the given directory, outside .gitlet, is read
+ *  into memory and then compressed and decompressed with each codec, and
+ *  the total size and throughput of each codec are reported, so that a
+ *  compression level can be chosen for .gitlet/config.  The "auto" row
+ *  picks a codec per file as the object store does.  Usage:
+ *  <pre>
+ *      java gitlet.CodecBenchmark [DIRECTORY]
+ *  </pre>
+ *  @author Keshav Sharma
+ */
+class CodecBenchmark {
+
+    /** Number of timed runs of each codec, of which the fastest counts. */
+    static final int RUNS = 3;
+
+    /** Most bytes of sample files read into memory. */
+    static final long MAX_BYTES = 256L << 20;
+
+    /** Runs the benchmark on the files under ARGS[0], or under the current
+     * directory if there is no argument.
+     * @param args : Optional directory of the sample repository.
+     * */
+    public static void main(String... args) throws IOException {
+        File dir = new File(args.length > 0 ? args[0] : ".");
+        List<byte[]> files = sample(dir.toPath());
+        long total = 0;
+        for (byte[] file : files) {
+            total += file.length;
+        }
+        System.out.printf("%d files, %d bytes%n", files.size(), total);
+        System.out.printf("%-10s %12s %7s %12s %12s%n", "codec", "bytes",
+                          "ratio", "comp MB/s", "decomp MB/s");
+        report(Codec.NONE, files, total);
+        for (int level = 1; level <= Deflater.BEST_COMPRESSION; level += 1) {
+            report(Codec.deflate(level), files, total);
+        }
+        report(null, files, total);
+    }
+
+    /** Reports on CODEC for FILES, which hold TOTAL bytes.  If CODEC is
+     * null, the codec for each file is chosen from a sample of it, at the
+     * default level.
+     * @param codec : Codec to measure, or null.
+     * @param files : Contents of the sample files.
+     * @param total : Total size of FILES.
+     * */
+    private static void report(Codec codec, List<byte[]> files, long total)
+        throws IOException {
+        long compressTime = Long.MAX_VALUE, decompressTime = Long.MAX_VALUE;
+        long size = 0;
+        for (int run = 0; run < RUNS; run += 1) {
+            ArrayList<byte[]> packed = new ArrayList<byte[]>();
+            long start = System.nanoTime();
+            for (byte[] file : files) {
+                Codec chosen = codec != null ? codec
+                    : Codec.choose(file, file.length, file.length,
+                                   Codec.DEFAULT_LEVEL);
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                bytes.write(chosen.id());
+                try (OutputStream out = chosen.compress(bytes)) {
+                    out.write(file);
+                }
+                packed.add(bytes.toByteArray());
+            }
+            compressTime = Math.min(compressTime, System.nanoTime() - start);
+            size = 0;
+            start = System.nanoTime();
+            for (byte[] object : packed) {
+                size += object.length;
+                InputStream in = new ByteArrayInputStream(object);
+                try (InputStream contents =
+                        Codec.forId((byte) in.read()).decompress(in)) {
+                    contents.readAllBytes();
+                }
+            }
+            decompressTime = Math.min(decompressTime,
+                                      System.nanoTime() - start);
+        }
+        System.out.printf("%-10s %12d %7.3f %12.1f %12.1f%n",
+                          codec == null ? "auto" : codec.name(), size,
+                          (double) size / Math.max(total, 1),
+                          rate(total, compressTime),
+                          rate(total, decompressTime));
+    }
+
+    /** Returns the throughput in MB/s of BYTES handled in NANOS ns.
+     * @param bytes : Number of bytes handled.
+     * @param nanos : Time taken.
+     * */
+    private static double rate(long bytes, long nanos) {
+        return bytes / 1e6 / Math.max(nanos / 1e9, 1e-9);
+    }
+
+    /** Returns the contents of the plain files under DIR, outside any
+     * .gitlet directory, up to MAX_BYTES in all.
+     * @param dir : Directory of the sample repository.
+     * */
+    private static List<byte[]> sample(Path dir) throws IOException {
+        ArrayList<byte[]> result = new ArrayList<byte[]>();
+        long total = 0;
+        try (Stream<Path> paths = Files.walk(dir)) {
+            for (Path path : (Iterable<Path>) paths::iterator) {
+                if (!Files.isRegularFile(path)
+                        || dir.relativize(path).toString().contains(".gitlet")
+                        || total + Files.size(path) > MAX_BYTES) {
+                    continue;
+                }
+                byte[] contents = Files.readAllBytes(path);
+                total += contents.length;
+                result.add(contents);
+            }
+        }
+        return result;
+    }
+
+}
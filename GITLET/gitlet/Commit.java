@@ -1,10 +1,11 @@
 package gitlet;
 
 import java.io.Serializable;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.Date;
-import java.text.SimpleDateFormat;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
 
 /** Class that describes Commit.
  * @author Keshav Sharma
@@ -17,26 +18,26 @@ public class Commit implements Serializable {
      * @param parent : parent Commit of current commit.
      * @param toAddF2SHA1 : Files staged to be added.
      * @param toRemove : Files staged to be removed.
+     * @param store : Object store for the commit's trees.
      * */
     Commit(String commitMessage, Commit parent,
            HashMap<String, String> toAddF2SHA1,
-           ArrayList<String> toRemove) {
-        _childrenSHA1 = new ArrayList<String>();
+           ArrayList<String> toRemove, ObjectStore store) {
+        _store = store;
         if (commitMessage.equals("initial commit")) {
-            _fileNames2SHA1 = new HashMap<String, String>();
+            _tree = Tree.EMPTY;
             _parentSHA1 = new ArrayList<String>();
             _commitTime = "Wed Dec 31 16:00:00 1969 -0800";
             _count = 0;
         } else {
-            if (parent.commitMessage().equals("initial commit")) {
-                _fileNames2SHA1 = updateBlobs(toAddF2SHA1, toRemove,
-                        new HashMap<String, String>(), true);
-            } else {
-                _fileNames2SHA1 = updateBlobs(toAddF2SHA1, toRemove,
-                        parent._fileNames2SHA1, false);
+            HashMap<String, String> changes = new HashMap<String, String>();
+            for (String name : toRemove) {
+                changes.put(name, null);
             }
+            changes.putAll(toAddF2SHA1);
+            _tree = Tree.update(store, parent.tree(), changes);
             _parentSHA1 = new ArrayList<String>();
-            _count = parent._count++;
+            _count = parent._count + 1;
             _parentSHA1.add(parent.sHA1());
             _commitTime = currentTime();
         }
@@ -44,38 +45,102 @@ public class Commit implements Serializable {
         if (commitMessage.equals("initial commit")) {
             _sHA1 = Utils.sha1(_commitMessage, _commitTime);
         } else {
-            _sHA1 = Utils.sha1(_fileNames2SHA1.keySet().toString(),
-                    _parentSHA1.toString(), _commitMessage, _commitTime);
+            _sHA1 = Utils.sha1(_tree, _parentSHA1.toString(),
+                    _commitMessage, _commitTime);
         }
     }
 
-    /** Retroactively modify childrenSHA1 attribute of commit.
-     * @param child : Commit to have children SHA1 references
-     *              to be added.
+    /** Merge commit constructor.  The commit has PARENT as its first
+     * parent and MERGED, the head of the branch merged in, as its second.
+     * @param commitMessage : Commit message of commit.
+     * @param parent : Head commit of the current branch.
+     * @param merged : Head commit of the given branch.
+     * @param toAddF2SHA1 : Files staged to be added.
+     * @param toRemove : Files staged to be removed.
+     * @param store : Object store for the commit's trees.
      * */
-    public void addChildrenSHA1(Commit child) {
-        this._childrenSHA1.add(child.sHA1());
+    Commit(String commitMessage, Commit parent, Commit merged,
+           HashMap<String, String> toAddF2SHA1,
+           ArrayList<String> toRemove, ObjectStore store) {
+        this(commitMessage, parent, toAddF2SHA1, toRemove, store);
+        _parentSHA1.add(merged.sHA1());
+        _sHA1 = Utils.sha1(_tree, _parentSHA1.toString(),
+                _commitMessage, _commitTime);
+    }
+
+    /** A commit as read back from the commit store.
+     * @param sHA1 : SHA1 of the commit.
+     * @param commitMessage : Commit message of commit.
+     * @param commitTime : Time of commit.
+     * @param count : Commit number.
+     * @param parents : Parent commit SHA1 values.
+     * @param tree : Id of the root tree, or null if FILES is given.
+     * @param files : Encoded file table, decoded on first use, or null.
+     * @param store : Object store holding the commit's trees.
+     * */
+    Commit(String sHA1, String commitMessage, String commitTime, int count,
+           ArrayList<String> parents, String tree, ByteBuffer files,
+           ObjectStore store) {
+        _sHA1 = sHA1;
+        _commitMessage = commitMessage;
+        _commitTime = commitTime;
+        _count = count;
+        _parentSHA1 = parents;
+        _tree = tree;
+        _encodedFiles = files;
+        _store = store;
     }
 
     /** Public access to commit number. */
     public int count() {
         return _count;
     }
-    /** Returns the SHA1 values of commit children. */
-    public ArrayList<String> childrenSHA1() {
-        return _childrenSHA1;
-    }
-
     /** Returns file names in commit to file sha1 values. */
     public HashMap<String, String> filesinCommit() {
+        if (_fileNames2SHA1 == null && _encodedFiles != null) {
+            _fileNames2SHA1 = CommitCodec.decodeFiles(_encodedFiles);
+            _encodedFiles = null;
+        } else if (_fileNames2SHA1 == null) {
+            _fileNames2SHA1 = Tree.flatten(_store, _tree);
+        }
         return _fileNames2SHA1;
     }
 
+    /** Returns the SHA1 of the file FILENAME in this commit, or null if
+     * it has no such file.  Only the trees along its path are read.
+     * @param fileName : Path of the file.
+     * */
+    public String blob(String fileName) {
+        if (_fileNames2SHA1 != null) {
+            return _fileNames2SHA1.get(fileName);
+        }
+        return Tree.lookup(_store, tree(), fileName);
+    }
+
+    /** Returns the id of the root tree of this commit. */
+    public String tree() {
+        if (_tree == null) {
+            _tree = Tree.build(_store, filesinCommit());
+        }
+        return _tree;
+    }
+
+    /** Returns true iff this commit was stored with a root tree, rather
+     * than the file table of the first binary format. */
+    public boolean hasTree() {
+        return _tree != null;
+    }
+
     /** Returns commit message. */
     public String commitMessage() {
         return _commitMessage;
     }
 
+    /** Returns the time of the commit. */
+    public String commitTime() {
+        return _commitTime;
+    }
+
     /** Returns first parent SHA1. */
     public String firstParent() {
         return _parentSHA1.get(0);
@@ -103,48 +168,9 @@ public class Commit implements Serializable {
     }
 
 
-    /** Function updates the blob references for the commit when constructed.
-     * @param f2SHA1Staging : Files in staging area for addition.
-     * @param parentF2SHA1 : Files from parent commit.
-     * @param removal : Files staged for removal.
-     * @param isSecondCommit : True if second commit.
-     * @return Files in the current commit.
-     * */
-    public HashMap<String, String> updateBlobs(
-            HashMap<String, String> f2SHA1Staging,
-            ArrayList<String> removal,
-            HashMap<String, String>
-                    parentF2SHA1,
-            boolean isSecondCommit) {
-        if (isSecondCommit) {
-            return f2SHA1Staging;
-        } else {
-            HashMap<String, String> copyParent = new HashMap<String, String>();
-            copyParent.putAll(parentF2SHA1);
-            for (String s : f2SHA1Staging.keySet()) {
-                if (copyParent.containsKey(s)
-                        && (!copyParent.get(s).equals(f2SHA1Staging.get(s)))) {
-                    copyParent.put(s, f2SHA1Staging.get(s));
-                } else if (copyParent.containsKey(s)
-                        && copyParent.get(s).equals(f2SHA1Staging.get(s))) {
-                    continue;
-                } else {
-                    copyParent.put(s, f2SHA1Staging.get(s));
-                }
-            }
-            for (String s : removal) {
-                if (copyParent.containsKey(s)) {
-                    copyParent.remove(s);
-                }
-            }
-            return copyParent;
-        }
-    }
-
     /** Returns the current time. */
     public String currentTime() {
-        Date curr = new Date();
-        return DATE_FORMAT.format(curr);
+        return DATE_FORMAT.format(ZonedDateTime.now());
     }
 
     /** Returns commit's SHA1 value. */
@@ -169,24 +195,34 @@ public class Commit implements Serializable {
     /**Commit number. */
     private int _count;
 
-    /** Arraylist of SHA1 values of children. */
-    private ArrayList<String> _childrenSHA1;
-
     /** SHA1 of commit. */
     private String _sHA1;
 
     /** Arraylist of parent commit SHA1 values. */
     private ArrayList<String> _parentSHA1;
 
-    /** Date formatter. */
-    public static final SimpleDateFormat DATE_FORMAT =
-            new SimpleDateFormat("EEE MMM d HH:mm:ss yyyy Z");
+    /** Date formatter, which unlike a SimpleDateFormat is immutable and
+     * so may be shared by commits made on several threads at once. */
+    public static final DateTimeFormatter DATE_FORMAT =
+            DateTimeFormatter.ofPattern("EEE MMM d HH:mm:ss yyyy Z");
 
 
     private final long serialVersionUID =  6849558214771468762L;
 
-    /** File name to file SHA1 values hashmap in commit. */
-    private HashMap<String, String> _fileNames2SHA1;
+    /** Id of the root tree of the commit, or null until it is needed
+     * for a commit read with an encoded file table. */
+    private String _tree;
+
+    /** File name to file SHA1 values hashmap in commit, or null until it
+     * is first asked for. */
+    private transient HashMap<String, String> _fileNames2SHA1;
+
+    /** File table of a commit read from the commit store, until it is
+     * decoded into _fileNames2SHA1. */
+    private transient ByteBuffer _encodedFiles;
+
+    /** Object store holding the trees of the commit. */
+    private transient ObjectStore _store;
 
 
 
@@ -0,0 +1,157 @@
+package gitlet;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/** Binary encoding of commits.  A record is laid out as
+ *  <pre>
+ *      VERSION           1 byte
+ *      id                UID_BYTES raw bytes
+ *      count             varint
+ *      parent count      varint, then UID_BYTES raw bytes per parent
+ *      time, message     varint length, then UTF-8 bytes, each
+ *      tree              UID_BYTES raw bytes
+ *  </pre>
+ *  Varints are unsigned, seven bits per byte, least significant group
+ *  first.  Records of version 1 have, in place of the tree, a file count
+ *  followed by a table of the commit's files in path order.  Each entry
+ *  has the varint length of the prefix its path shares with the previous
+ *  path, the varint length and UTF-8 bytes of the rest of the path, and
+ *  the UID_BYTES raw bytes of the blob.
+ *  @author Keshav Sharma
+ */
+class CommitCodec {
+
+    /** Version byte of the current format. */
+    static final byte VERSION = 2;
+
+    /** Version byte of the format with a file table. */
+    static final byte FILE_TABLE = 1;
+
+    /** Returns the record of COMMIT.
+     * @param commit : Commit to encode.
+     * */
+    static byte[] encode(Commit commit) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(VERSION);
+        out.writeBytes(Utils.fromHex(commit.sHA1()));
+        writeVarint(out, commit.count());
+        writeVarint(out, commit.parents().size());
+        for (String parent : commit.parents()) {
+            out.writeBytes(Utils.fromHex(parent));
+        }
+        writeString(out, commit.commitTime().getBytes(StandardCharsets.UTF_8));
+        writeString(out, commit.commitMessage()
+                    .getBytes(StandardCharsets.UTF_8));
+        out.writeBytes(Utils.fromHex(commit.tree()));
+        return out.toByteArray();
+    }
+
+    /** Returns the commit whose record fills the remainder of RECORD,
+     * whose trees are in STORE.  The file table of a version 1 record is
+     * left in RECORD, to be decoded only if the commit's files are asked
+     * for.
+     * @param record : Buffer positioned at the start of a record.
+     * @param store : Object store holding the commit's trees.
+     * */
+    static Commit decode(ByteBuffer record, ObjectStore store) {
+        byte version = record.get();
+        if (version != VERSION && version != FILE_TABLE) {
+            throw Utils.error("Unknown commit format %d.", version);
+        }
+        byte[] raw = new byte[Utils.UID_BYTES];
+        record.get(raw);
+        String id = Utils.toHex(raw, 0);
+        int count = readVarint(record);
+        ArrayList<String> parents = new ArrayList<String>();
+        for (int n = readVarint(record); n > 0; n -= 1) {
+            record.get(raw);
+            parents.add(Utils.toHex(raw, 0));
+        }
+        String time = new String(readString(record), StandardCharsets.UTF_8);
+        String message =
+            new String(readString(record), StandardCharsets.UTF_8);
+        if (version == FILE_TABLE) {
+            return new Commit(id, message, time, count, parents, null,
+                              record, store);
+        }
+        record.get(raw);
+        return new Commit(id, message, time, count, parents,
+                          Utils.toHex(raw, 0), null, store);
+    }
+
+    /** Returns the file map in the file table at the position of RECORD.
+     * @param record : Buffer positioned at the file count of a version 1
+     *                 record.
+     * */
+    static HashMap<String, String> decodeFiles(ByteBuffer record) {
+        byte[] raw = new byte[Utils.UID_BYTES];
+        int size = readVarint(record);
+        HashMap<String, String> files = new HashMap<String, String>(
+                Math.max(16, size * 4 / 3 + 1));
+        byte[] path = new byte[64];
+        for (int k = 0; k < size; k += 1) {
+            int shared = readVarint(record);
+            int suffix = readVarint(record);
+            if (shared + suffix > path.length) {
+                path = Arrays.copyOf(path, 2 * (shared + suffix));
+            }
+            record.get(path, shared, suffix);
+            record.get(raw);
+            files.put(new String(path, 0, shared + suffix,
+                                 StandardCharsets.UTF_8),
+                      Utils.toHex(raw, 0));
+        }
+        return files;
+    }
+
+    /** Writes BYTES to OUT preceded by their length.
+     * @param out : Stream to write to.
+     * @param bytes : Bytes to write.
+     * */
+    private static void writeString(ByteArrayOutputStream out,
+                                    byte[] bytes) {
+        writeVarint(out, bytes.length);
+        out.writeBytes(bytes);
+    }
+
+    /** Returns the length-prefixed bytes at the position of IN.
+     * @param in : Buffer to read.
+     * */
+    private static byte[] readString(ByteBuffer in) {
+        byte[] result = new byte[readVarint(in)];
+        in.get(result);
+        return result;
+    }
+
+    /** Writes the non-negative VALUE to OUT as a varint.
+     * @param out : Stream to write to.
+     * @param value : Value to write.
+     * */
+    static void writeVarint(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7f) != 0) {
+            out.write((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    /** Returns the varint at the position of IN.
+     * @param in : Buffer to read.
+     * */
+    static int readVarint(ByteBuffer in) {
+        int result = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = in.get();
+            result |= (b & 0x7f) << shift;
+            if (b >= 0) {
+                return result;
+            }
+        }
+    }
+
+}
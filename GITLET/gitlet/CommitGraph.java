@@ -0,0 +1,185 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.PriorityQueue;
+
+/** Persisted commit graph.  The record for the commit at position P of
+ *  the commit store holds its generation number and the positions of its
+ *  parents, so history can be walked with integer arithmetic instead of
+ *  deserializing commits.  The generation of a root commit is 1 and that of
+ *  any other commit is one more than the largest generation of its
+ *  parents, so every ancestor of a commit has a smaller generation.
+ *  @author Keshav Sharma
+ */
+class CommitGraph {
+
+    /** Size of one record: generation, first and second parent. */
+    static final int RECORD_SIZE = 3 * Integer.BYTES;
+
+    /** Parent position recorded for a missing parent. */
+    static final int NONE = -1;
+
+    /** Commit graph kept in FILE describing the commits in COMMITS.
+     * @param file : File holding the graph records.
+     * @param commits : Commit store whose positions the graph uses.
+     * */
+    CommitGraph(File file, CommitStore commits) {
+        _file = file;
+        _commits = commits;
+    }
+
+    /** Appends records for every commit in the store that the graph does
+     * not cover yet.  After a single commit this is one record, whose
+     * generation is found by reading the records of its parents. */
+    void update() {
+        long have = _file.length() / RECORD_SIZE;
+        if (have >= _commits.size()) {
+            return;
+        }
+        _map = null;
+        try (RandomAccessFile out = new RandomAccessFile(_file, "rw")) {
+            out.setLength(have * RECORD_SIZE);
+            for (int pos = (int) have; pos < _commits.size(); pos += 1) {
+                Commit commit = _commits.get(_commits.idAt(pos));
+                int first = NONE, second = NONE, generation = 1;
+                if (!commit.parents().isEmpty()) {
+                    first = _commits.position(commit.parents().get(0));
+                    generation = 1 + readGeneration(out, first);
+                }
+                if (commit.parents().size() > 1) {
+                    second = _commits.position(commit.parents().get(1));
+                    generation = Math.max(generation,
+                            1 + readGeneration(out, second));
+                }
+                out.seek((long) pos * RECORD_SIZE);
+                out.writeInt(generation);
+                out.writeInt(first);
+                out.writeInt(second);
+            }
+        } catch (IOException excp) {
+            throw Utils.error("Cannot update commit graph: %s",
+                    excp.getMessage());
+        }
+    }
+
+    /** Returns the generation number of commit ID.
+     * @param id : Full SHA-1 of a stored commit.
+     * */
+    int generation(String id) {
+        return generation(_commits.position(id));
+    }
+
+    /** Returns the id of a latest common ancestor of commits A and B, or
+     * null if they share no history.  Commits are visited from both sides
+     * in decreasing generation order, so every child of a commit has
+     * passed its marks on before the commit itself is visited.  The first
+     * commit reached from both sides is therefore a common ancestor that no
+     * other common ancestor descends from, and the search stops there
+     * without looking at anything of lower generation.
+     * @param a : Full SHA-1 of the first commit.
+     * @param b : Full SHA-1 of the second commit.
+     * */
+    String mergeBase(String a, String b) {
+        HashMap<Integer, Integer> marks = new HashMap<Integer, Integer>();
+        PriorityQueue<Integer> fringe = new PriorityQueue<Integer>(
+            (x, y) -> Integer.compare(generation(y), generation(x)));
+        mark(marks, fringe, _commits.position(a), FROM_A);
+        mark(marks, fringe, _commits.position(b), FROM_B);
+        while (!fringe.isEmpty()) {
+            int pos = fringe.remove();
+            int flags = marks.get(pos);
+            if (flags == BOTH) {
+                return _commits.idAt(pos);
+            }
+            mark(marks, fringe, parent(pos, 0), flags);
+            mark(marks, fringe, parent(pos, 1), flags);
+        }
+        return null;
+    }
+
+    /** Adds FLAGS to the marks of the commit at POS, queueing it on FRINGE
+     * the first time it is reached.
+     * @param marks : Marks of every commit reached so far.
+     * @param fringe : Commits waiting to be visited.
+     * @param pos : Position of the commit, or NONE.
+     * @param flags : Sides the commit was reached from.
+     * */
+    private void mark(HashMap<Integer, Integer> marks,
+                      PriorityQueue<Integer> fringe, int pos, int flags) {
+        if (pos == NONE) {
+            return;
+        }
+        Integer old = marks.get(pos);
+        if (old == null) {
+            marks.put(pos, flags);
+            fringe.add(pos);
+        } else if ((old | flags) != old) {
+            marks.put(pos, old | flags);
+        }
+    }
+
+    /** Returns the generation of the commit at position POS.
+     * @param pos : Position of the commit.
+     * */
+    int generation(int pos) {
+        return map().getInt(pos * RECORD_SIZE);
+    }
+
+    /** Returns the position of parent K (0 or 1) of the commit at POS,
+     * or NONE.
+     * @param pos : Position of the commit.
+     * @param k : Which parent.
+     * */
+    int parent(int pos, int k) {
+        return map().getInt(pos * RECORD_SIZE + (k + 1) * Integer.BYTES);
+    }
+
+    /** Returns the generation stored in record POS of the open graph IN.
+     * @param in : Open graph file.
+     * @param pos : Position of the commit.
+     * */
+    private static int readGeneration(RandomAccessFile in, int pos)
+        throws IOException {
+        in.seek((long) pos * RECORD_SIZE);
+        return in.readInt();
+    }
+
+    /** Returns the graph mapped into memory, bringing it up to date with
+     * the commit store first. */
+    private MappedByteBuffer map() {
+        if (_map == null) {
+            update();
+            try (FileChannel in = FileChannel.open(_file.toPath())) {
+                _map = in.map(FileChannel.MapMode.READ_ONLY, 0, in.size());
+            } catch (IOException excp) {
+                throw Utils.error("Cannot read commit graph: %s",
+                        excp.getMessage());
+            }
+        }
+        return _map;
+    }
+
+    /** Mark of a commit reached from the first commit of a search. */
+    private static final int FROM_A = 1;
+
+    /** Mark of a commit reached from the second commit of a search. */
+    private static final int FROM_B = 2;
+
+    /** Mark of a commit reached from both commits of a search. */
+    private static final int BOTH = FROM_A | FROM_B;
+
+    /** File holding the graph records. */
+    private final File _file;
+
+    /** Commit store the graph describes. */
+    private final CommitStore _commits;
+
+    /** Memory-mapped graph, or null if not yet mapped. */
+    private MappedByteBuffer _map;
+
+}
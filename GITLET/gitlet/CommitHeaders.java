@@ -0,0 +1,171 @@
+package gitlet;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+
+/** Persisted headers of the commits in a commit store: each commit's id,
+ *  parents, time and message, without its file map.  The header of the
+ *  commit at position P of the store is record P of a data file, and entry
+ *  P of an offsets file holds the offset at which that record ends, so
+ *  any header is found with two reads and no deserialization.  Both files
+ *  are mapped into memory in windows, with long offsets, so they may grow
+ *  past 2 GiB, and printing a page of history touches only the records on
+ *  that page.
+ *  @author Keshav Sharma
+ */
+class CommitHeaders {
+
+    /** Size of one entry of the offsets file. */
+    static final int OFFSET_SIZE = Long.BYTES;
+
+    /** Headers kept in FILE, with their offsets in FILE.idx, describing
+     * the commits in COMMITS.
+     * @param file : File holding the header records.
+     * @param commits : Commit store whose positions the headers use.
+     * */
+    CommitHeaders(File file, CommitStore commits) {
+        _file = file;
+        _offsets = new File(file.getPath() + ".idx");
+        _commits = commits;
+    }
+
+    /** Appends headers for every commit in the store that are not yet
+     * recorded.  After a single commit this is one record.  A record left
+     * behind by an interrupted update, past the last recorded offset, is
+     * overwritten. */
+    void update() {
+        long have = _offsets.length() / OFFSET_SIZE;
+        if (have >= _commits.size()) {
+            return;
+        }
+        _map = null;
+        _offsetMap = null;
+        try (RandomAccessFile data = new RandomAccessFile(_file, "rw");
+             RandomAccessFile offsets = new RandomAccessFile(_offsets, "rw")) {
+            long end = 0;
+            if (have > 0) {
+                offsets.seek((have - 1) * OFFSET_SIZE);
+                end = offsets.readLong();
+            }
+            data.setLength(end);
+            data.seek(end);
+            offsets.setLength(have * OFFSET_SIZE);
+            offsets.seek(have * OFFSET_SIZE);
+            for (int pos = (int) have; pos < _commits.size(); pos += 1) {
+                byte[] record = encode(_commits.get(_commits.idAt(pos)));
+                data.write(record);
+                end += record.length;
+                offsets.writeLong(end);
+            }
+        } catch (IOException excp) {
+            throw Utils.error("Cannot update commit headers: %s",
+                    excp.getMessage());
+        }
+    }
+
+    /** Returns the log entry of the commit at position POS, exactly as
+     * Commit.logOutput prints it.
+     * @param pos : Position of the commit.
+     * */
+    String logEntry(int pos) {
+        map();
+        long at = pos == 0 ? 0 : _offsetMap.getLong(
+                (long) (pos - 1) * OFFSET_SIZE);
+        byte[] raw = new byte[Utils.UID_BYTES];
+        _map.slice(at, Utils.UID_BYTES).get(raw);
+        String id = Utils.toHex(raw, 0);
+        at += Utils.UID_BYTES;
+        int parents = _map.slice(at, 1).get(0);
+        at += 1;
+        String merge = null;
+        if (parents == 2) {
+            _map.slice(at, Utils.UID_BYTES).get(raw);
+            String first = Utils.toHex(raw, 0);
+            _map.slice(at + Utils.UID_BYTES, Utils.UID_BYTES).get(raw);
+            String second = Utils.toHex(raw, 0);
+            merge = "Merge: " + first.substring(0, 6) + " "
+                + second.substring(0, 6);
+        }
+        at += parents * Utils.UID_BYTES;
+        String time = readString(at);
+        at += Integer.BYTES + _map.getInt(at);
+        String message = readString(at);
+        StringBuilder result = new StringBuilder();
+        result.append("===\n");
+        result.append("commit ").append(id).append('\n');
+        if (merge != null) {
+            result.append(merge).append('\n');
+        }
+        result.append("Date: ").append(time).append('\n');
+        result.append(message).append('\n');
+        result.append('\n');
+        return result.toString();
+    }
+
+    /** Returns the length-prefixed string at offset AT of the headers.
+     * @param at : Offset of the string's length.
+     * */
+    private String readString(long at) {
+        byte[] bytes = new byte[_map.getInt(at)];
+        _map.slice(at + Integer.BYTES, bytes.length).get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /** Returns the header record of COMMIT.
+     * @param commit : A stored commit.
+     * */
+    private static byte[] encode(Commit commit) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.write(Utils.fromHex(commit.sHA1()));
+        out.writeByte(commit.parents().size());
+        for (String parent : commit.parents()) {
+            out.write(Utils.fromHex(parent));
+        }
+        writeString(out, commit.commitTime());
+        writeString(out, commit.commitMessage());
+        return bytes.toByteArray();
+    }
+
+    /** Writes S to OUT as its length in bytes followed by its UTF-8 bytes.
+     * @param out : Stream to write to.
+     * @param s : String to write.
+     * */
+    private static void writeString(DataOutputStream out, String s)
+        throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /** Maps both files into memory, in windows so that they may grow
+     * past 2 GiB, bringing them up to date with the commit store first. */
+    private void map() {
+        if (_map != null) {
+            return;
+        }
+        update();
+        _map = new MappedFile(_file);
+        _offsetMap = new MappedFile(_offsets);
+    }
+
+    /** File holding the header records. */
+    private final File _file;
+
+    /** File holding the end offset of each record. */
+    private final File _offsets;
+
+    /** Commit store the headers describe. */
+    private final CommitStore _commits;
+
+    /** Memory-mapped header records, or null if not yet mapped. */
+    private MappedFile _map;
+
+    /** Memory-mapped end offsets, or null if not yet mapped. */
+    private MappedFile _offsetMap;
+
+}
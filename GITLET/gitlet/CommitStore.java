@@ -0,0 +1,453 @@
+package gitlet;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+/** Store of commits kept as immutable CommitCodec records in an
+ *  append-only segment file, with an append-only journal from commit SHA-1
+ *  to record offset.  Writing a commit appends one record and one journal
+ *  entry; reading a commit decodes its record in place from a memory
+ *  mapping of the segment, made in windows, so the segment may grow past
+ *  2 GiB.
+ *
+ *  Lookups by id go through a sorted index of the journal, which holds a
+ *  256-entry fan-out table by first byte followed by the sorted raw ids
+ *  and their positions in the journal.  It is searched in place through a
+ *  memory mapping.  Entries journaled since the sorted index was built
+ *  form a short tail kept in memory, and the sorted index is rebuilt
+ *  whenever the tail grows past MAX_TAIL entries.
+ *  @author Keshav Sharma
+ */
+class CommitStore {
+
+    /** Size in bytes of one journal entry: raw SHA-1 followed by offset. */
+    static final int ENTRY_SIZE = Utils.UID_BYTES + Long.BYTES;
+
+    /** Version number written at the start of the sorted index. */
+    static final int SORTED_VERSION = 1;
+
+    /** Number of entries in the fan-out table of the sorted index. */
+    static final int FANOUT = 256;
+
+    /** Size of the header of the sorted index: version, entry count and
+     * fan-out table. */
+    static final int SORTED_HEADER = (2 + FANOUT) * Integer.BYTES;
+
+    /** Largest number of journal entries left out of the sorted index. */
+    static final int MAX_TAIL = 256;
+
+    /** Commit store whose files live in DIR, for commits whose trees are
+     * kept in OBJECTS.
+     * @param dir : Directory holding the segment and index files.
+     * @param objects : Object store holding the trees of the commits.
+     * */
+    CommitStore(File dir, ObjectStore objects) {
+        _objects = objects;
+        _segment = Utils.join(dir, "commits.log");
+        _journal = Utils.join(dir, "commits.idx");
+        _sorted = Utils.join(dir, "commits.sidx");
+    }
+
+    /** Creates empty segment and journal files. */
+    void create() throws IOException {
+        _segment.createNewFile();
+        _journal.createNewFile();
+    }
+
+    /** Returns true iff commit ID is in the store.
+     * @param id : Full SHA-1 of the commit.
+     * */
+    boolean contains(String id) {
+        return position(id) >= 0;
+    }
+
+    /** Returns the ids of all commits in the order they were written. */
+    List<String> ids() {
+        int count = size();
+        ArrayList<String> result = new ArrayList<String>(count);
+        byte[] entries = readJournal(0, count);
+        for (int i = 0; i < count; i += 1) {
+            result.add(Utils.toHex(entries, i * ENTRY_SIZE));
+        }
+        return Collections.unmodifiableList(result);
+    }
+
+    /** Returns the number of commits in the store. */
+    int size() {
+        load();
+        return _sortedCount + _tailIds.size();
+    }
+
+    /** Returns the position of commit ID in write order, or -1 if there
+     * is no such commit.  Since a commit is always written after its
+     * parents, positions are a topological order of the history.
+     * @param id : Full SHA-1 of the commit.
+     * */
+    int position(String id) {
+        load();
+        Integer tail = _tail.get(id);
+        if (tail != null) {
+            return tail;
+        }
+        if (id.length() != Utils.UID_LENGTH) {
+            return -1;
+        }
+        byte[] key = Utils.fromHex(id);
+        int k = lowerBound(key, 0, _sortedCount);
+        if (k < _sortedCount && compareSorted(k, key) == 0) {
+            return sortedPosition(k);
+        }
+        return -1;
+    }
+
+    /** Returns the id of the commit at position POS in write order.
+     * @param pos : Position of the commit.
+     * */
+    String idAt(int pos) {
+        load();
+        if (pos >= _sortedCount) {
+            return _tailIds.get(pos - _sortedCount);
+        }
+        byte[] id = new byte[Utils.UID_BYTES];
+        _journalMap.get(pos * ENTRY_SIZE, id);
+        return Utils.toHex(id, 0);
+    }
+
+    /** Returns the full id of the one commit whose id starts with PREFIX,
+     * or null if there is none.  Throws a GitletException if several
+     * commits start with PREFIX.
+     * @param prefix : Hexadecimal prefix of a commit id.
+     * */
+    String resolve(String prefix) {
+        if (prefix.isEmpty() || prefix.length() > Utils.UID_LENGTH
+                || !prefix.chars().allMatch(c -> Character.digit(c, 16) >= 0
+                                            && !Character.isUpperCase(c))) {
+            return null;
+        }
+        load();
+        byte[] low = Utils.fromHex(pad(prefix, '0'));
+        byte[] high = Utils.fromHex(pad(prefix, 'f'));
+        int first = low[0] & 0xff;
+        int lo = first == 0 ? 0 : _sortedMap.getInt(fanout(first - 1));
+        int hi = _sortedCount == 0 ? 0
+            : _sortedMap.getInt(fanout(high[0] & 0xff));
+        String result = null;
+        int matches = 0;
+        for (int k = lowerBound(low, lo, hi); k < hi; k += 1) {
+            String id = sortedId(k);
+            if (!id.startsWith(prefix)) {
+                break;
+            }
+            result = id;
+            matches += 1;
+        }
+        for (String id : _tailIds) {
+            if (id.startsWith(prefix)) {
+                result = id;
+                matches += 1;
+            }
+        }
+        if (matches > 1) {
+            throw Utils.error("Commit id %s is ambiguous.", prefix);
+        }
+        return result;
+    }
+
+    /** Returns commit ID, or null if there is no such commit.
+     * @param id : Full SHA-1 of the commit.
+     * */
+    Commit get(String id) {
+        int pos = position(id);
+        if (pos < 0) {
+            return null;
+        }
+        long offset = offsetAt(pos);
+        if (_segmentMap == null) {
+            _segmentMap = new MappedFile(_segment);
+        }
+        ByteBuffer record = _segmentMap.slice(offset + Integer.BYTES,
+                _segmentMap.getInt(offset));
+        return CommitCodec.decode(record, _objects);
+    }
+
+    /** Appends COMMIT to the segment and journal unless it is already
+     * stored.  The record is written before its journal entry, so a crash
+     * between the two leaves an unreferenced record rather than a dangling
+     * journal entry.  The entry is written just after the last whole
+     * entry, over any partial one an interrupted append left behind.
+     * @param commit : Commit to store.
+     * */
+    void put(Commit commit) {
+        String id = commit.sHA1();
+        if (contains(id)) {
+            return;
+        }
+        byte[] record = CommitCodec.encode(commit);
+        long offset = _segment.length();
+        int pos = size();
+        try {
+            try (DataOutputStream out = new DataOutputStream(
+                    new FileOutputStream(_segment, true))) {
+                out.writeInt(record.length);
+                out.write(record);
+            }
+            try (RandomAccessFile out = new RandomAccessFile(_journal,
+                                                             "rw")) {
+                out.seek((long) pos * ENTRY_SIZE);
+                out.write(ByteBuffer.allocate(ENTRY_SIZE)
+                          .put(Utils.fromHex(id)).putLong(offset).array());
+            }
+        } catch (IOException excp) {
+            throw Utils.error("Cannot write commit %s: %s", id,
+                    excp.getMessage());
+        }
+        _tail.put(id, pos);
+        _tailIds.add(id);
+        _tailOffsets.add(offset);
+        if (_tailIds.size() > MAX_TAIL) {
+            rebuild();
+        }
+    }
+
+    /** Maps the sorted index and reads the tail of the journal on first
+     * use, rebuilding the sorted index if it is missing too much.  A
+     * trailing partial entry left by an interrupted append is ignored,
+     * and overwritten by the next put. */
+    private void load() {
+        if (_tail != null) {
+            return;
+        }
+        int count = (int) (_journal.length() / ENTRY_SIZE);
+        _sortedCount = 0;
+        _sortedMap = ByteBuffer.allocate(SORTED_HEADER);
+        if (_sorted.isFile()) {
+            MappedByteBuffer sorted = map(_sorted);
+            if (sorted.getInt(0) == SORTED_VERSION
+                    && sorted.getInt(Integer.BYTES) <= count) {
+                _sortedMap = sorted;
+                _sortedCount = sorted.getInt(Integer.BYTES);
+            }
+        }
+        _journalMap = map(_journal);
+        _tail = new HashMap<String, Integer>();
+        _tailIds = new ArrayList<String>();
+        _tailOffsets = new ArrayList<Long>();
+        byte[] id = new byte[Utils.UID_BYTES];
+        for (int pos = _sortedCount; pos < count; pos += 1) {
+            _journalMap.get(pos * ENTRY_SIZE, id);
+            _tail.put(Utils.toHex(id, 0), pos);
+            _tailIds.add(Utils.toHex(id, 0));
+            _tailOffsets.add(_journalMap.getLong(pos * ENTRY_SIZE
+                                                 + Utils.UID_BYTES));
+        }
+        if (_tailIds.size() > MAX_TAIL) {
+            rebuild();
+        }
+    }
+
+    /** Writes a sorted index covering the whole journal and switches to
+     * it.  The index is written to a temporary file and renamed into
+     * place, so readers see either the old index or the new one. */
+    private void rebuild() {
+        int count = size();
+        byte[] entries = readJournal(0, count);
+        Integer[] order = new Integer[count];
+        for (int i = 0; i < count; i += 1) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (x, y) -> Arrays.compareUnsigned(
+                entries, x * ENTRY_SIZE, x * ENTRY_SIZE + Utils.UID_BYTES,
+                entries, y * ENTRY_SIZE, y * ENTRY_SIZE + Utils.UID_BYTES));
+        int[] fanout = new int[FANOUT];
+        for (int i = 0; i < count; i += 1) {
+            fanout[entries[i * ENTRY_SIZE] & 0xff] += 1;
+        }
+        for (int b = 1; b < FANOUT; b += 1) {
+            fanout[b] += fanout[b - 1];
+        }
+        File temp = new File(_sorted.getPath() + ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(temp)))) {
+                out.writeInt(SORTED_VERSION);
+                out.writeInt(count);
+                for (int b = 0; b < FANOUT; b += 1) {
+                    out.writeInt(fanout[b]);
+                }
+                for (int pos : order) {
+                    out.write(entries, pos * ENTRY_SIZE, Utils.UID_BYTES);
+                }
+                for (int pos : order) {
+                    out.writeInt(pos);
+                }
+            }
+            Files.move(temp.toPath(), _sorted.toPath(),
+                    StandardCopyOption.ATOMIC_MOVE,
+                    StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException excp) {
+            throw Utils.error("Cannot write commit index: %s",
+                    excp.getMessage());
+        }
+        _tail = null;
+        load();
+    }
+
+    /** Returns the index of the first sorted id in [LO, HI) that is not
+     * less than KEY, or HI if there is none.
+     * @param key : Raw id to search for.
+     * @param lo : First index of the range.
+     * @param hi : One past the last index of the range.
+     * */
+    private int lowerBound(byte[] key, int lo, int hi) {
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (compareSorted(mid, key) < 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /** Compares the sorted id at index K with KEY as unsigned bytes.
+     * @param k : Index in the sorted index.
+     * @param key : Raw id.
+     * */
+    private int compareSorted(int k, byte[] key) {
+        int base = SORTED_HEADER + k * Utils.UID_BYTES;
+        for (int i = 0; i < Utils.UID_BYTES; i += 1) {
+            int c = Integer.compare(_sortedMap.get(base + i) & 0xff,
+                                    key[i] & 0xff);
+            if (c != 0) {
+                return c;
+            }
+        }
+        return 0;
+    }
+
+    /** Returns the id at index K of the sorted index.
+     * @param k : Index in the sorted index.
+     * */
+    private String sortedId(int k) {
+        byte[] id = new byte[Utils.UID_BYTES];
+        _sortedMap.get(SORTED_HEADER + k * Utils.UID_BYTES, id);
+        return Utils.toHex(id, 0);
+    }
+
+    /** Returns the journal position of the id at index K of the sorted
+     * index.
+     * @param k : Index in the sorted index.
+     * */
+    private int sortedPosition(int k) {
+        return _sortedMap.getInt(SORTED_HEADER
+                + _sortedCount * Utils.UID_BYTES + k * Integer.BYTES);
+    }
+
+    /** Returns the offset in the sorted index of fan-out entry B, the
+     * number of ids whose first byte is at most B.
+     * @param b : Unsigned value of a first byte.
+     * */
+    private static int fanout(int b) {
+        return (2 + b) * Integer.BYTES;
+    }
+
+    /** Returns the segment offset of the commit at position POS.
+     * @param pos : Position of the commit.
+     * */
+    private long offsetAt(int pos) {
+        if (pos >= _sortedCount) {
+            return _tailOffsets.get(pos - _sortedCount);
+        }
+        return _journalMap.getLong(pos * ENTRY_SIZE + Utils.UID_BYTES);
+    }
+
+    /** Returns journal entries [FROM, TO) as one array.
+     * @param from : Position of the first entry.
+     * @param to : One past the position of the last entry.
+     * */
+    private byte[] readJournal(int from, int to) {
+        byte[] result = new byte[(to - from) * ENTRY_SIZE];
+        try (RandomAccessFile in = new RandomAccessFile(_journal, "r")) {
+            in.seek((long) from * ENTRY_SIZE);
+            in.readFully(result);
+        } catch (IOException excp) {
+            throw Utils.error("Cannot read commit index: %s",
+                    excp.getMessage());
+        }
+        return result;
+    }
+
+    /** Returns FILE mapped read-only into memory.
+     * @param file : File to map.
+     * */
+    private static MappedByteBuffer map(File file) {
+        try (FileChannel in = FileChannel.open(file.toPath())) {
+            return in.map(FileChannel.MapMode.READ_ONLY, 0, in.size());
+        } catch (IOException excp) {
+            throw Utils.error("Cannot read %s: %s", file.getName(),
+                    excp.getMessage());
+        }
+    }
+
+    /** Returns PREFIX padded to a full id with copies of DIGIT.
+     * @param prefix : Hexadecimal prefix of an id.
+     * @param digit : Hexadecimal digit to pad with.
+     * */
+    private static String pad(String prefix, char digit) {
+        char[] result = new char[Utils.UID_LENGTH];
+        Arrays.fill(result, digit);
+        prefix.getChars(0, prefix.length(), result, 0);
+        return new String(result);
+    }
+
+    /** Segment file holding length-prefixed commit records. */
+    private final File _segment;
+
+    /** Journal of commit SHA-1 to segment offset entries. */
+    private final File _journal;
+
+    /** Object store holding the trees of the commits. */
+    private final ObjectStore _objects;
+
+    /** Segment mapped into memory in windows, so that it may grow past
+     * 2 GiB, or null if not yet used. */
+    private MappedFile _segmentMap;
+
+    /** Sorted index of the journal. */
+    private final File _sorted;
+
+    /** The journal, mapped into memory as of the last load. */
+    private ByteBuffer _journalMap;
+
+    /** The sorted index, mapped into memory. */
+    private ByteBuffer _sortedMap;
+
+    /** Number of journal entries covered by the sorted index. */
+    private int _sortedCount;
+
+    /** Position of each commit journaled after the sorted index was
+     * built, or null if the store is not yet loaded. */
+    private HashMap<String, Integer> _tail;
+
+    /** Ids of the commits in the tail, in write order. */
+    private ArrayList<String> _tailIds;
+
+    /** Segment offsets of the commits in the tail, in write order. */
+    private ArrayList<Long> _tailOffsets;
+
+}
@@ -0,0 +1,69 @@
+package gitlet;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Properties;
+
+/** Settings of a repository, read from the .gitlet/config file.  The file
+ *  holds one KEY=VALUE setting per line, and # starts a comment:
+ *  <pre>
+ *      # Deflate level of new objects, from 0 (none) to 9.
+ *      compression.level=9
+ *  </pre>
+ *  A missing file or setting takes its default value.
+ *  @author Keshav Sharma
+ */
+class Config {
+
+    /** Key of the deflate level of new objects. */
+    static final String COMPRESSION_LEVEL = "compression.level";
+
+    /** Settings read from FILE.
+     * @param file : Configuration file, which need not exist.
+     * */
+    Config(File file) {
+        _file = file;
+    }
+
+    /** Returns the integer value of setting KEY, or DEFAULTVALUE if it is
+     * not set.
+     * @param key : Name of the setting.
+     * @param defaultValue : Value of a missing setting.
+     * */
+    int getInt(String key, int defaultValue) {
+        String value = properties().getProperty(key);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException excp) {
+            throw Utils.error("Bad value for %s in config: %s", key, value);
+        }
+    }
+
+    /** Returns the settings, reading the file the first time. */
+    private Properties properties() {
+        if (_properties == null) {
+            _properties = new Properties();
+            if (_file.isFile()) {
+                try (Reader in = new FileReader(_file)) {
+                    _properties.load(in);
+                } catch (IOException excp) {
+                    throw Utils.error("Cannot read config: %s",
+                            excp.getMessage());
+                }
+            }
+        }
+        return _properties;
+    }
+
+    /** Configuration file. */
+    private final File _file;
+
+    /** Settings, or null if not yet read. */
+    private Properties _properties;
+
+}
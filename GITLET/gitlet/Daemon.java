@@ -0,0 +1,266 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.LinkedHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/** Resident server for one repository.  It keeps the repository state
+ *  in memory and runs commands sent to a Unix-domain socket at
+ *  .gitlet/daemon.sock, one at a time, exactly as a one-shot gitlet
+ *  process would.  A request is the length in bytes, as a four-byte int,
+ *  of the command's arguments separated by NUL characters, followed by
+ *  those arguments, so an argument may hold a newline; the reply is the
+ *  command's output, ended by closing the connection.  A command that
+ *  fails unexpectedly is logged, and the client is sent a line starting
+ *  with "Internal error:".  State files changed by a command are
+ *  written behind, at most FLUSH_DELAY milliseconds later, as a single
+ *  Checkpoint.  The request --shutdown writes any pending state and stops
+ *  the daemon.
+ *  @author Keshav Sharma
+ */
+class Daemon {
+
+    /** Name of the socket inside the .gitlet directory. */
+    static final String SOCKET = "daemon.sock";
+
+    /** Milliseconds a changed state file may stay unwritten. */
+    static final long FLUSH_DELAY = 200;
+
+    /** Request that stops the daemon. */
+    static final String SHUTDOWN = "--shutdown";
+
+    /** Largest request accepted, in bytes. */
+    static final int MAX_REQUEST = 1 << 20;
+
+    /** Log of commands that fail unexpectedly. */
+    private static final System.Logger LOG =
+        System.getLogger(Daemon.class.getName());
+
+    /** Daemon for REPOSITORY.
+     * @param repository : The repository served.
+     * */
+    Daemon(Repository repository) {
+        File dir = repository.dir();
+        _repository = repository;
+        _dir = dir;
+        _socket = Utils.join(dir, SOCKET);
+        _checkpoint = new Checkpoint(dir);
+        _pending = new LinkedHashMap<String, byte[]>();
+        _flusher = Executors.newSingleThreadScheduledExecutor();
+    }
+
+    /** Serves requests until a --shutdown request arrives.  Throws a
+     * GitletException if another daemon already serves the repository. */
+    void serve() throws IOException {
+        if (!_dir.isDirectory()) {
+            throw new NoRepositoryException(
+                    "Not in an initialized Gitlet directory.");
+        } else if (serving(_dir)) {
+            throw Utils.error("A daemon is serving this repository.");
+        }
+        Files.deleteIfExists(_socket.toPath());
+        _repository.attach(this);
+        Runtime.getRuntime().addShutdownHook(new Thread(this::flush));
+        try (ServerSocketChannel server =
+                ServerSocketChannel.open(StandardProtocolFamily.UNIX)) {
+            server.bind(UnixDomainSocketAddress.of(_socket.toPath()));
+            boolean running = true;
+            while (running) {
+                try (SocketChannel client = server.accept()) {
+                    running = handle(client);
+                } catch (IOException excp) {
+                    LOG.log(System.Logger.Level.WARNING,
+                            "Bad request: " + excp.getMessage());
+                }
+            }
+        } finally {
+            Files.deleteIfExists(_socket.toPath());
+            _flusher.shutdown();
+            flush();
+        }
+    }
+
+    /** Runs the request arriving on CLIENT, sending back its output.
+     * Returns false iff the request asks the daemon to stop.
+     * @param client : Connection to a client.
+     * */
+    private boolean handle(SocketChannel client) throws IOException {
+        String[] args = readRequest(client);
+        if (args == null) {
+            return true;
+        }
+        PrintStream out = new PrintStream(Channels.newOutputStream(client),
+                false, StandardCharsets.UTF_8);
+        if (args.length == 1 && args[0].equals(SHUTDOWN)) {
+            flush();
+            out.close();
+            return false;
+        }
+        synchronized (this) {
+            _repository.output(out);
+            try {
+                _repository.run(args);
+            } catch (GitletException excp) {
+                out.println(excp.getMessage());
+                abandon();
+            } catch (RuntimeException excp) {
+                LOG.log(System.Logger.Level.ERROR,
+                        "Command " + String.join(" ", args) + " failed",
+                        excp);
+                out.println("Internal error: " + excp);
+                abandon();
+            }
+            if (!_pending.isEmpty() && !_flushScheduled) {
+                _flushScheduled = true;
+                _flusher.schedule(this::flush, FLUSH_DELAY,
+                        TimeUnit.MILLISECONDS);
+            }
+        }
+        out.close();
+        return true;
+    }
+
+    /** Records CONTENTS as the new contents of state file FILE, to be
+     * written at the next checkpoint.
+     * @param file : State file inside the .gitlet directory.
+     * @param contents : Its new contents.
+     * */
+    synchronized void defer(File file, byte[] contents) {
+        _pending.put(_dir.toPath().relativize(file.toPath()).toString(),
+                contents);
+    }
+
+    /** Writes every pending state file as one checkpoint. */
+    synchronized void flush() {
+        _flushScheduled = false;
+        _checkpoint.commit(_pending);
+        _pending.clear();
+    }
+
+    /** Brings the disk up to date with whatever the failed command saved,
+     * and drops the in-memory state it may have left half changed, just
+     * as a one-shot process would by exiting. */
+    private void abandon() {
+        flush();
+        _repository.discardState();
+    }
+
+    /** Sends ARGS to the daemon serving the repository whose .gitlet
+     * directory is DIR, copying its reply to the standard output.
+     * Returns false if no daemon is serving that repository.
+     * @param dir : The .gitlet directory.
+     * @param args : Command name followed by its operands.
+     * */
+    static boolean forward(File dir, String... args) {
+        File socket = Utils.join(dir, SOCKET);
+        if (!socket.exists()) {
+            return false;
+        }
+        try (SocketChannel server = SocketChannel.open(
+                UnixDomainSocketAddress.of(socket.toPath()))) {
+            byte[] request =
+                String.join("\0", args).getBytes(StandardCharsets.UTF_8);
+            ByteBuffer buf = ByteBuffer.allocate(Integer.BYTES
+                                                 + request.length);
+            buf.putInt(request.length).put(request).flip();
+            while (buf.hasRemaining()) {
+                server.write(buf);
+            }
+            InputStream reply = Channels.newInputStream(server);
+            reply.transferTo(System.out);
+            System.out.flush();
+            return true;
+        } catch (IOException excp) {
+            return false;
+        }
+    }
+
+    /** Returns true iff a daemon is accepting requests for the repository
+     * whose .gitlet directory is DIR.  The daemon takes the connection,
+     * closed without a request, as a probe.
+     * @param dir : The .gitlet directory.
+     * */
+    static boolean serving(File dir) {
+        File socket = Utils.join(dir, SOCKET);
+        if (!socket.exists()) {
+            return false;
+        }
+        try {
+            SocketChannel.open(UnixDomainSocketAddress.of(socket.toPath()))
+                .close();
+            return true;
+        } catch (IOException excp) {
+            return false;
+        }
+    }
+
+    /** Returns the arguments of the request arriving on CLIENT, or null
+     * if the client closed the connection without sending any.
+     * @param client : Connection to a client.
+     * */
+    private static String[] readRequest(SocketChannel client)
+        throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(Integer.BYTES);
+        if (client.read(header) < 0) {
+            return null;
+        }
+        readFully(client, header);
+        int length = header.getInt(0);
+        if (length < 0 || length > MAX_REQUEST) {
+            throw new IOException("bad request length " + length);
+        }
+        ByteBuffer request = ByteBuffer.allocate(length);
+        readFully(client, request);
+        String text = new String(request.array(), StandardCharsets.UTF_8);
+        return text.isEmpty() ? new String[0] : text.split("\0", -1);
+    }
+
+    /** Fills BUF from CLIENT.
+     * @param client : Connection to a client.
+     * @param buf : Buffer to fill.
+     * */
+    private static void readFully(SocketChannel client, ByteBuffer buf)
+        throws IOException {
+        while (buf.hasRemaining()) {
+            if (client.read(buf) < 0) {
+                throw new IOException("request ended early");
+            }
+        }
+    }
+
+    /** The repository served. */
+    private final Repository _repository;
+
+    /** The .gitlet directory of the repository served. */
+    private final File _dir;
+
+    /** Socket the daemon listens on. */
+    private final File _socket;
+
+    /** Writer of pending state. */
+    private final Checkpoint _checkpoint;
+
+    /** State files changed since the last checkpoint, by name relative
+     * to the .gitlet directory. */
+    private final LinkedHashMap<String, byte[]> _pending;
+
+    /** Thread that writes pending state behind the commands. */
+    private final ScheduledExecutorService _flusher;
+
+    /** True iff a checkpoint is already scheduled. */
+    private boolean _flushScheduled;
+
+}
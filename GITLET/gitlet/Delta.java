@@ -0,0 +1,185 @@
+package gitlet;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/** Copy/insert deltas between two versions of an object.  A delta is the
+ *  varint lengths of the base and of the result, followed by instructions
+ *  that build the result from left to right:
+ *  <pre>
+ *      COPY   varint offset, varint length    copy bytes of the base
+ *      INSERT varint length, bytes             copy bytes of the delta
+ *  </pre>
+ *  Deltas are found by indexing the base by the hash of each aligned block
+ *  of BLOCK bytes, sliding a rolling hash of the same width along the
+ *  target, and extending every confirmed block match as far as it goes in
+ *  both directions.
+ *  @author Keshav Sharma
+ */
+class Delta {
+
+    /** Width in bytes of the blocks matched between base and target. */
+    static final int BLOCK = 16;
+
+    /** Instruction copying bytes of the base. */
+    static final byte COPY = 1;
+
+    /** Instruction inserting bytes held in the delta. */
+    static final byte INSERT = 2;
+
+    /** Multiplier of the rolling hash. */
+    private static final int PRIME = 0x01000193;
+
+    /** Returns a delta that turns BASE into TARGET.
+     * @param base : Contents of the base version.
+     * @param target : Contents of the new version.
+     * */
+    static byte[] create(byte[] base, byte[] target) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        CommitCodec.writeVarint(out, base.length);
+        CommitCodec.writeVarint(out, target.length);
+        int blocks = base.length / BLOCK;
+        int[] table = new int[Integer.highestOneBit(Math.max(2 * blocks, 1))
+                              << 1];
+        Arrays.fill(table, -1);
+        int mask = table.length - 1;
+        for (int b = blocks - 1; b >= 0; b -= 1) {
+            table[slot(hash(base, b * BLOCK), mask)] = b * BLOCK;
+        }
+        int power = 1;
+        for (int k = 1; k < BLOCK; k += 1) {
+            power *= PRIME;
+        }
+        int pending = 0;
+        int i = 0;
+        int h = target.length >= BLOCK ? hash(target, 0) : 0;
+        while (blocks > 0 && i + BLOCK <= target.length) {
+            int candidate = table[slot(h, mask)];
+            if (candidate >= 0 && Arrays.equals(base, candidate,
+                    candidate + BLOCK, target, i, i + BLOCK)) {
+                int start = i, from = candidate;
+                while (start > pending && from > 0
+                       && base[from - 1] == target[start - 1]) {
+                    start -= 1;
+                    from -= 1;
+                }
+                int end = i + BLOCK, to = candidate + BLOCK;
+                while (end < target.length && to < base.length
+                       && base[to] == target[end]) {
+                    end += 1;
+                    to += 1;
+                }
+                insert(out, target, pending, start);
+                out.write(COPY);
+                CommitCodec.writeVarint(out, from);
+                CommitCodec.writeVarint(out, end - start);
+                pending = i = end;
+                if (i + BLOCK <= target.length) {
+                    h = hash(target, i);
+                }
+            } else {
+                if (i + BLOCK < target.length) {
+                    h = (h - target[i] * power) * PRIME + target[i + BLOCK];
+                }
+                i += 1;
+            }
+        }
+        insert(out, target, pending, target.length);
+        return out.toByteArray();
+    }
+
+    /** Returns the result of applying DELTA, from its position to its
+     * limit, to BASE.
+     * @param base : Contents of the base version.
+     * @param delta : A delta created against BASE.
+     * */
+    static byte[] apply(byte[] base, ByteBuffer delta) {
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        try {
+            apply(base, delta, result);
+        } catch (IOException excp) {
+            throw Utils.error("Cannot apply delta: %s", excp.getMessage());
+        }
+        return result.toByteArray();
+    }
+
+    /** Writes the result of applying DELTA, from its position to its
+     * limit, to BASE to OUT as it is built, without holding it whole.
+     * @param base : Contents of the base version.
+     * @param delta : A delta created against BASE.
+     * @param out : Stream for the result.
+     * */
+    static void apply(byte[] base, ByteBuffer delta, OutputStream out)
+        throws IOException {
+        if (CommitCodec.readVarint(delta) != base.length) {
+            throw Utils.error("Delta does not match its base.");
+        }
+        long size = CommitCodec.readVarint(delta);
+        long at = 0;
+        byte[] buffer = new byte[Utils.BUFFER_SIZE];
+        while (delta.hasRemaining()) {
+            byte op = delta.get();
+            int length;
+            if (op == COPY) {
+                int from = CommitCodec.readVarint(delta);
+                length = CommitCodec.readVarint(delta);
+                out.write(base, from, length);
+            } else if (op == INSERT) {
+                length = CommitCodec.readVarint(delta);
+                for (int n = 0; n < length; ) {
+                    int chunk = Math.min(buffer.length, length - n);
+                    delta.get(buffer, 0, chunk);
+                    out.write(buffer, 0, chunk);
+                    n += chunk;
+                }
+            } else {
+                throw Utils.error("Corrupt delta.");
+            }
+            at += length;
+        }
+        if (at != size) {
+            throw Utils.error("Corrupt delta.");
+        }
+    }
+
+    /** Writes an instruction inserting TARGET[FROM .. TO-1] to OUT, unless
+     * that range is empty.
+     * @param out : Stream of the delta.
+     * @param target : Contents of the new version.
+     * @param from : First byte to insert.
+     * @param to : One past the last byte to insert.
+     * */
+    private static void insert(ByteArrayOutputStream out, byte[] target,
+                               int from, int to) {
+        if (from < to) {
+            out.write(INSERT);
+            CommitCodec.writeVarint(out, to - from);
+            out.write(target, from, to - from);
+        }
+    }
+
+    /** Returns the hash of DATA[AT .. AT+BLOCK-1], as the rolling hash in
+     * create computes it.
+     * @param data : Bytes holding the block.
+     * @param at : Offset of the block.
+     * */
+    private static int hash(byte[] data, int at) {
+        int h = 0;
+        for (int k = 0; k < BLOCK; k += 1) {
+            h = h * PRIME + data[at + k];
+        }
+        return h;
+    }
+
+    /** Returns the slot of hash H in a table with MASK + 1 slots.
+     * @param h : A block hash.
+     * @param mask : One less than the power-of-two size of the table.
+     * */
+    private static int slot(int h, int mask) {
+        return (h ^ (h >>> 15)) & mask;
+    }
+
+}
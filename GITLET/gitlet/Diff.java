@@ -0,0 +1,307 @@
+package gitlet;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/** Line diff between two sequences of line numbers, as produced by
+ *  Lines.intern.  The diff is found by Myers' O(ND) algorithm in its
+ *  linear-space form: the middle snake of an optimal edit path splits the
+ *  problem in two, and each half is solved the same way, so memory stays
+ *  proportional to the edit distance.  Where two regions are so different
+ *  that the search passes MAX_COST edits, the region is instead split at
+ *  the longest run of common lines around its rarest shared line, as in a
+ *  histogram diff, and each side is diffed again.  A region with no such
+ *  line is reported as replaced outright.
+ *  @author Keshav Sharma
+ */
+class Diff {
+
+    /** Largest number of edits the middle-snake search looks for before
+     * falling back to splitting the region at a rare line. */
+    static final int MAX_COST = 1024;
+
+    /** Occurrences in its region beyond which a line is too common to
+     * split a region at. */
+    static final int MAX_OCCURRENCES = 64;
+
+    /** A replacement of lines [beginA, endA) of the first sequence by
+     * lines [beginB, endB) of the second.  Either range may be empty. */
+    static class Edit {
+
+        /** An edit replacing A[BEGINA .. ENDA-1] by B[BEGINB .. ENDB-1].
+         * @param beginA : First replaced line of A.
+         * @param endA : One past the last replaced line of A.
+         * @param beginB : First replacing line of B.
+         * @param endB : One past the last replacing line of B.
+         * */
+        Edit(int beginA, int endA, int beginB, int endB) {
+            _beginA = beginA;
+            _endA = endA;
+            _beginB = beginB;
+            _endB = endB;
+        }
+
+        /** Returns the first replaced line of A. */
+        int beginA() {
+            return _beginA;
+        }
+
+        /** Returns one past the last replaced line of A. */
+        int endA() {
+            return _endA;
+        }
+
+        /** Returns the first replacing line of B. */
+        int beginB() {
+            return _beginB;
+        }
+
+        /** Returns one past the last replacing line of B. */
+        int endB() {
+            return _endB;
+        }
+
+        /** First replaced line of A. */
+        private int _beginA;
+        /** One past the last replaced line of A. */
+        private int _endA;
+        /** First replacing line of B. */
+        private int _beginB;
+        /** One past the last replacing line of B. */
+        private int _endB;
+    }
+
+    /** Returns the edits that turn A into B, in order, with no two of
+     * them adjacent.
+     * @param a : Line numbers of the first sequence.
+     * @param b : Line numbers of the second sequence.
+     * */
+    static List<Edit> diff(int[] a, int[] b) {
+        Diff d = new Diff(a, b);
+        d.diff(0, a.length, 0, b.length);
+        return d._edits;
+    }
+
+    /** A diff of A against B.
+     * @param a : Line numbers of the first sequence.
+     * @param b : Line numbers of the second sequence.
+     * */
+    private Diff(int[] a, int[] b) {
+        _a = a;
+        _b = b;
+        _edits = new ArrayList<Edit>();
+        int numbers = 0;
+        for (int n : a) {
+            numbers = Math.max(numbers, n + 1);
+        }
+        for (int n : b) {
+            numbers = Math.max(numbers, n + 1);
+        }
+        _countsA = new int[numbers];
+        _countsB = new int[numbers];
+    }
+
+    /** Adds the edits that turn A[ALO .. AHI-1] into B[BLO .. BHI-1].
+     * @param aLo : Start of the region of A.
+     * @param aHi : End of the region of A.
+     * @param bLo : Start of the region of B.
+     * @param bHi : End of the region of B.
+     * */
+    private void diff(int aLo, int aHi, int bLo, int bHi) {
+        while (aLo < aHi && bLo < bHi && _a[aLo] == _b[bLo]) {
+            aLo += 1;
+            bLo += 1;
+        }
+        while (aLo < aHi && bLo < bHi && _a[aHi - 1] == _b[bHi - 1]) {
+            aHi -= 1;
+            bHi -= 1;
+        }
+        if (aLo == aHi || bLo == bHi) {
+            if (aLo < aHi || bLo < bHi) {
+                add(aLo, aHi, bLo, bHi);
+            }
+            return;
+        }
+        int[] snake = middleSnake(aLo, aHi, bLo, bHi);
+        if (snake == null) {
+            split(aLo, aHi, bLo, bHi);
+        } else {
+            diff(aLo, snake[0], bLo, snake[1]);
+            diff(snake[2], aHi, snake[3], bHi);
+        }
+    }
+
+    /** Returns the start and end points {x0, y0, x1, y1} of the diagonal
+     * middle snake of an optimal path from (ALO, BLO) to (AHI, BHI), or
+     * null if the path costs more than MAX_COST edits.  The region must
+     * not start or end with a common line, so that the path costs at
+     * least two edits and both halves it leaves are smaller problems.
+     * @param aLo : Start of the region of A.
+     * @param aHi : End of the region of A.
+     * @param bLo : Start of the region of B.
+     * @param bHi : End of the region of B.
+     * */
+    private int[] middleSnake(int aLo, int aHi, int bLo, int bHi) {
+        int n = aHi - aLo, m = bHi - bLo;
+        int delta = n - m;
+        boolean odd = (delta & 1) != 0;
+        int max = Math.min((n + m + 1) / 2, MAX_COST);
+        int offset = max + 1;
+        int[] forward = new int[2 * max + 3];
+        int[] backward = new int[2 * max + 3];
+        forward[offset + 1] = aLo;
+        backward[offset + 1] = bHi;
+        for (int d = 0; d <= max; d += 1) {
+            for (int k = d; k >= -d; k -= 2) {
+                int x;
+                if (k == -d || (k != d && forward[offset + k - 1]
+                                < forward[offset + k + 1])) {
+                    x = forward[offset + k + 1];
+                } else {
+                    x = forward[offset + k - 1] + 1;
+                }
+                int y = bLo + (x - aLo) - k;
+                int x0 = x, y0 = y;
+                while (x < aHi && y < bHi && _a[x] == _b[y]) {
+                    x += 1;
+                    y += 1;
+                }
+                forward[offset + k] = x;
+                int c = k - delta;
+                if (odd && c >= -(d - 1) && c <= d - 1
+                        && y >= backward[offset + c]) {
+                    return new int[] { x0, y0, x, y };
+                }
+            }
+            for (int c = d; c >= -d; c -= 2) {
+                int y;
+                if (c == -d || (c != d && backward[offset + c - 1]
+                                > backward[offset + c + 1])) {
+                    y = backward[offset + c + 1];
+                } else {
+                    y = backward[offset + c - 1] - 1;
+                }
+                int k = c + delta;
+                int x = aLo + (y - bLo) + k;
+                int x0 = x, y0 = y;
+                while (x > aLo && y > bLo && _a[x - 1] == _b[y - 1]) {
+                    x -= 1;
+                    y -= 1;
+                }
+                backward[offset + c] = y;
+                if (!odd && k >= -d && k <= d
+                        && x <= forward[offset + k]) {
+                    return new int[] { x, y, x0, y0 };
+                }
+            }
+        }
+        return null;
+    }
+
+    /** Adds the edits that turn A[ALO .. AHI-1] into B[BLO .. BHI-1] by
+     * splitting the regions at the longest run of common lines that
+     * contains the rarest line of A's region also found in B's, taking
+     * the one nearest the middle of A's region among equally rare lines so
+     * that the two halves are balanced.
+     * @param aLo : Start of the region of A.
+     * @param aHi : End of the region of A.
+     * @param bLo : Start of the region of B.
+     * @param bHi : End of the region of B.
+     * */
+    private void split(int aLo, int aHi, int bLo, int bHi) {
+        for (int i = aLo; i < aHi; i += 1) {
+            _countsA[_a[i]] += 1;
+        }
+        for (int j = bLo; j < bHi; j += 1) {
+            _countsB[_b[j]] += 1;
+        }
+        int rare = -1, fewest = MAX_OCCURRENCES + 1, distance = 0;
+        int middle = (aLo + aHi) / 2;
+        for (int i = aLo; i < aHi; i += 1) {
+            int count = _countsA[_a[i]];
+            int other = _countsB[_a[i]];
+            if (other > 0 && other <= MAX_OCCURRENCES
+                    && (count < fewest || count == fewest
+                        && Math.abs(i - middle) < distance)) {
+                rare = _a[i];
+                fewest = count;
+                distance = Math.abs(i - middle);
+            }
+        }
+        for (int i = aLo; i < aHi; i += 1) {
+            _countsA[_a[i]] = 0;
+        }
+        for (int j = bLo; j < bHi; j += 1) {
+            _countsB[_b[j]] = 0;
+        }
+        if (rare < 0) {
+            add(aLo, aHi, bLo, bHi);
+            return;
+        }
+        int bestI = -1, bestJ = -1, bestLength = 0;
+        for (int i = aLo; i < aHi; i += 1) {
+            if (_a[i] != rare) {
+                continue;
+            }
+            for (int j = bLo; j < bHi; j += 1) {
+                if (_b[j] != rare) {
+                    continue;
+                }
+                int lo = 0;
+                while (i - lo > aLo && j - lo > bLo
+                       && _a[i - lo - 1] == _b[j - lo - 1]) {
+                    lo += 1;
+                }
+                int hi = 1;
+                while (i + hi < aHi && j + hi < bHi
+                       && _a[i + hi] == _b[j + hi]) {
+                    hi += 1;
+                }
+                if (lo + hi > bestLength) {
+                    bestI = i - lo;
+                    bestJ = j - lo;
+                    bestLength = lo + hi;
+                }
+            }
+        }
+        diff(aLo, bestI, bLo, bestJ);
+        diff(bestI + bestLength, aHi, bestJ + bestLength, bHi);
+    }
+
+    /** Adds the edit replacing A[ALO .. AHI-1] by B[BLO .. BHI-1], joining
+     * it to the previous edit if the two touch.
+     * @param aLo : Start of the region of A.
+     * @param aHi : End of the region of A.
+     * @param bLo : Start of the region of B.
+     * @param bHi : End of the region of B.
+     * */
+    private void add(int aLo, int aHi, int bLo, int bHi) {
+        if (!_edits.isEmpty()) {
+            Edit last = _edits.get(_edits.size() - 1);
+            if (last._endA == aLo && last._endB == bLo) {
+                last._endA = aHi;
+                last._endB = bHi;
+                return;
+            }
+        }
+        _edits.add(new Edit(aLo, aHi, bLo, bHi));
+    }
+
+    /** Line numbers of the first sequence. */
+    private final int[] _a;
+
+    /** Line numbers of the second sequence. */
+    private final int[] _b;
+
+    /** Edits found so far, in order. */
+    private final ArrayList<Edit> _edits;
+
+    /** Occurrences of each line number in the region of A being split,
+     * and zero outside a split. */
+    private final int[] _countsA;
+
+    /** Occurrences of each line number in the region of B being split,
+     * and zero outside a split. */
+    private final int[] _countsB;
+
+}
@@ -0,0 +1,121 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/** Lister of the working files that are not ignored.  The directories of
+ *  the working tree are read in parallel on a work-stealing ForkJoinPool,
+ *  one task per directory, and each entry is checked against the
+ *  IgnoreMatcher as soon as it is read, so an ignored directory is never
+ *  opened and costs no more than an ignored file.  As the directories
+ *  above an entry were all checked on the way down, only the entry itself
+ *  is matched.  The .gitlet directory is always skipped.
+ *  @author Keshav Sharma
+ */
+class FileScanner {
+
+    /** Scanner of working directory WORKDIR, skipping what IGNORE
+     * matches.
+     * @param workDir : Working directory.
+     * @param ignore : Matcher of the ignored files.
+     * */
+    FileScanner(File workDir, IgnoreMatcher ignore) {
+        _root = workDir.toPath().toAbsolutePath().normalize();
+        _ignore = ignore;
+    }
+
+    /** Returns the paths, relative to the working directory and in sorted
+     * order, of the plain files that are at or beneath FILE and not
+     * ignored.
+     * @param file : File or directory inside the working directory.
+     * */
+    List<String> files(File file) {
+        Path start = file.toPath().toAbsolutePath().normalize();
+        ArrayList<String> result = new ArrayList<String>();
+        if (start.startsWith(_root.resolve(".gitlet"))) {
+            return result;
+        } else if (Files.isDirectory(start)) {
+            if (!start.equals(_root)
+                    && _ignore.ignored(relative(start), true)) {
+                return result;
+            }
+            result.addAll(ForkJoinPool.commonPool().invoke(new Scan(start)));
+        } else if (Files.isRegularFile(start)) {
+            result.add(relative(start));
+        }
+        Collections.sort(result);
+        return result;
+    }
+
+    /** Returns the path of FILE relative to the working directory,
+     * separated by /.
+     * @param file : Absolute path inside the working directory.
+     * */
+    private String relative(Path file) {
+        return _root.relativize(file).toString()
+            .replace(File.separatorChar, '/');
+    }
+
+    /** Task listing the files beneath one directory. */
+    private class Scan extends RecursiveTask<List<String>> {
+
+        /** Task listing the files beneath DIR.
+         * @param dir : Directory that is not ignored.
+         * */
+        Scan(Path dir) {
+            _dir = dir;
+        }
+
+        @Override
+        protected List<String> compute() {
+            ArrayList<String> result = new ArrayList<String>();
+            ArrayList<Scan> subdirs = new ArrayList<Scan>();
+            try (DirectoryStream<Path> entries =
+                    Files.newDirectoryStream(_dir)) {
+                for (Path entry : entries) {
+                    BasicFileAttributes attrs = Files.readAttributes(
+                            entry, BasicFileAttributes.class,
+                            LinkOption.NOFOLLOW_LINKS);
+                    String path = relative(entry);
+                    if (attrs.isDirectory()) {
+                        if (!path.equals(".gitlet")
+                                && !_ignore.matches(path, true)) {
+                            subdirs.add(new Scan(entry));
+                        }
+                    } else if ((attrs.isRegularFile()
+                                || Files.isRegularFile(entry))
+                               && !_ignore.matches(path, false)) {
+                        result.add(path);
+                    }
+                }
+            } catch (IOException excp) {
+                throw Utils.error("Cannot read %s: %s", _dir,
+                                  excp.getMessage());
+            }
+            for (Scan subdir : invokeAll(subdirs)) {
+                result.addAll(subdir.join());
+            }
+            return result;
+        }
+
+        /** Directory to list. */
+        private final Path _dir;
+    }
+
+    /** Working directory. */
+    private final Path _root;
+
+    /** Matcher of the ignored files. */
+    private final IgnoreMatcher _ignore;
+
+}
@@ -0,0 +1,169 @@
+package gitlet;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/** Mark-and-sweep collector of unreachable objects in an object store.
+ *  The ids of the stored objects are listed once and sorted, so that each
+ *  object is a bit in a bitmap indexed by its rank.  Marking starts from
+ *  the trees and blobs of every stored commit, and from the staged blobs,
+ *  and walks the trees on a work-stealing ForkJoinPool.  Setting a bit is
+ *  an atomic test-and-set, so a subtree shared by many commits is read by
+ *  whichever thread reaches it first and skipped by all the others.
+ *  Sweeping then deletes every unmarked object older than the start of the
+ *  collection.  Only unreachable objects are ever deleted, so commands that
+ *  read the repository may run while it is being collected.  Only loose
+ *  objects are collected; Repacker drops unreachable packed objects.
+ *  @author Keshav Sharma
+ */
+class GarbageCollector {
+
+    /** Largest number of trees one task marks without splitting. */
+    static final int THRESHOLD = 16;
+
+    /** Age in milliseconds beyond which a temporary file in the store
+     * belongs to a write that will never finish. */
+    static final long TEMPORARY_AGE = 60 * 60 * 1000;
+
+    /** Collector of the objects of STORE not reachable from the commits of
+     * COMMITS.
+     * @param store : Object store to collect.
+     * @param commits : Commit store whose commits are all reachable.
+     * */
+    GarbageCollector(ObjectStore store, CommitStore commits) {
+        _store = store;
+        _commits = commits;
+    }
+
+    /** Deletes every object that is neither reachable from a commit nor
+     * one of the blobs STAGED, and returns the number of objects deleted
+     * and the number of bytes freed.
+     * @param staged : Blob ids of the staging area.
+     * */
+    long[] collect(Collection<String> staged) {
+        long start = System.currentTimeMillis();
+        _ids = _store.ids();
+        _marks = new AtomicLongArray((_ids.length + Long.SIZE - 1)
+                                     / Long.SIZE);
+        ArrayList<String> trees = new ArrayList<String>();
+        for (String blob : staged) {
+            mark(blob);
+        }
+        for (int pos = 0; pos < _commits.size(); pos += 1) {
+            Commit commit = _commits.get(_commits.idAt(pos));
+            if (commit.hasTree()) {
+                trees.add(commit.tree());
+            } else {
+                for (String blob : commit.filesinCommit().values()) {
+                    mark(blob);
+                }
+            }
+        }
+        ForkJoinPool.commonPool().invoke(new Mark(trees));
+        long[] result = new long[2];
+        for (int i = 0; i < _ids.length; i += 1) {
+            if (!marked(i)
+                    && _store.file(_ids[i]).lastModified() < start) {
+                result[0] += 1;
+                result[1] += _store.delete(_ids[i]);
+            }
+        }
+        _store.deleteTemporaries(start - TEMPORARY_AGE);
+        return result;
+    }
+
+    /** Sets the mark of object ID, returning true iff it was not already
+     * set.  An object that was not listed, such as the empty tree or one
+     * written since, needs no mark.
+     * @param id : Full SHA-1 of the object.
+     * */
+    private boolean mark(String id) {
+        int i = Arrays.binarySearch(_ids, id);
+        if (i < 0) {
+            return false;
+        }
+        long bit = 1L << (i % Long.SIZE);
+        long word = _marks.getAndUpdate(i / Long.SIZE, w -> w | bit);
+        return (word & bit) == 0;
+    }
+
+    /** Marks tree ID, returning true iff it was not reached before.  A
+     * tree that was not listed, because it is packed, is remembered in
+     * _unlisted instead, so that the loose objects beneath it are marked.
+     * @param id : Full SHA-1 of the tree.
+     * */
+    private boolean reach(String id) {
+        if (Arrays.binarySearch(_ids, id) < 0) {
+            return !id.equals(Tree.EMPTY) && _store.contains(id)
+                && _unlisted.add(id);
+        }
+        return mark(id);
+    }
+
+    /** Returns true iff the object with rank I is marked.
+     * @param i : Index of the object in _ids.
+     * */
+    private boolean marked(int i) {
+        return (_marks.get(i / Long.SIZE) & (1L << (i % Long.SIZE))) != 0;
+    }
+
+    /** Task marking a list of trees and everything beneath them. */
+    private class Mark extends RecursiveAction {
+
+        /** Task marking TREES.
+         * @param trees : Ids of the trees.
+         * */
+        Mark(List<String> trees) {
+            _trees = trees;
+        }
+
+        @Override
+        protected void compute() {
+            if (_trees.size() > THRESHOLD) {
+                int mid = _trees.size() / 2;
+                invokeAll(new Mark(_trees.subList(0, mid)),
+                          new Mark(_trees.subList(mid, _trees.size())));
+                return;
+            }
+            ArrayList<String> files = new ArrayList<String>();
+            ArrayList<String> subtrees = new ArrayList<String>();
+            for (String tree : _trees) {
+                if (reach(tree)) {
+                    Tree.entries(_store, tree, files, subtrees);
+                }
+            }
+            for (String blob : files) {
+                mark(blob);
+            }
+            if (!subtrees.isEmpty()) {
+                new Mark(subtrees).compute();
+            }
+        }
+
+        /** Ids of the trees to mark. */
+        private final List<String> _trees;
+    }
+
+    /** Object store being collected. */
+    private final ObjectStore _store;
+
+    /** Commit store whose commits are the roots of marking. */
+    private final CommitStore _commits;
+
+    /** Ids of the stored objects, in sorted order. */
+    private String[] _ids;
+
+    /** Mark bit of each object in _ids, by rank. */
+    private AtomicLongArray _marks;
+
+    /** Trees reached that are not in _ids. */
+    private final Set<String> _unlisted = ConcurrentHashMap.newKeySet();
+
+}
@@ -0,0 +1,101 @@
+package gitlet;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/** Hashes working files in parallel.  The list of files is split in half
+ *  repeatedly on a work-stealing ForkJoinPool, so idle threads take over
+ *  the unfinished halves of busy ones.  When it has an object store, a
+ *  hasher also stores the contents of every file it hashes.
+ *  @author Keshav Sharma
+ */
+class Hasher {
+
+    /** Largest number of files one task hashes without splitting. */
+    static final int THRESHOLD = 8;
+
+    /** A hasher that stores what it hashes in STORE, or only hashes if
+     * STORE is null.
+     * @param store : Object store for the file contents, or null.
+     * */
+    Hasher(ObjectStore store) {
+        _store = store;
+    }
+
+    /** Returns true iff a file whose contents have SHA-1 HASH needs no
+     * further work from this hasher, freshening the stored contents.
+     * @param hash : SHA-1 of the contents.
+     * */
+    boolean done(String hash) {
+        return _store == null || _store.freshen(hash);
+    }
+
+    /** Returns the SHA-1s of the contents of FILES, in the same order.
+     * @param files : Plain files to hash.
+     * */
+    String[] hash(List<File> files) {
+        String[] result = new String[files.size()];
+        if (files.size() <= THRESHOLD) {
+            new Task(files, result, 0, files.size()).compute();
+        } else {
+            ForkJoinPool.commonPool().invoke(
+                    new Task(files, result, 0, files.size()));
+        }
+        return result;
+    }
+
+    /** Returns the SHA-1 of FILE, storing its contents if needed.
+     * @param file : Plain file to hash.
+     * */
+    private String hash(File file) {
+        if (_store == null) {
+            return Utils.sha1(file);
+        }
+        return _store.put(file);
+    }
+
+    /** Task hashing a range of a list of files. */
+    private class Task extends RecursiveAction {
+
+        /** Task hashing FILES[LO .. HI-1] into RESULT[LO .. HI-1].
+         * @param files : All files being hashed.
+         * @param result : Their SHA-1s.
+         * @param lo : First index to hash.
+         * @param hi : One past the last index to hash.
+         * */
+        Task(List<File> files, String[] result, int lo, int hi) {
+            _files = files;
+            _result = result;
+            _lo = lo;
+            _hi = hi;
+        }
+
+        @Override
+        protected void compute() {
+            if (_hi - _lo <= THRESHOLD) {
+                for (int i = _lo; i < _hi; i += 1) {
+                    _result[i] = hash(_files.get(i));
+                }
+            } else {
+                int mid = (_lo + _hi) >>> 1;
+                invokeAll(new Task(_files, _result, _lo, mid),
+                          new Task(_files, _result, mid, _hi));
+            }
+        }
+
+        /** All files being hashed. */
+        private final List<File> _files;
+        /** SHA-1s of the files. */
+        private final String[] _result;
+        /** First index to hash. */
+        private final int _lo;
+        /** One past the last index to hash. */
+        private final int _hi;
+    }
+
+    /** Store for the hashed contents, or null. */
+    private final ObjectStore _store;
+
+}
@@ -0,0 +1,187 @@
+package gitlet;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/** Matcher of the working files that a .gitletignore file says are to be
+ *  ignored.  Each line of the file is a pattern, as in a .gitignore: *
+ *  matches any characters but /, ? one such character, [...] one of a set
+ *  and ** any number of directories, so that a pattern ending in /**
+ *  matches everything inside a directory but not the directory itself.
+ *  A pattern holding a / other than at its end is matched against the
+ *  whole path from the working directory, and any other against the last
+ *  name in a path.  A pattern ending in / matches only directories, and
+ *  one starting with ! re-includes what an earlier pattern ignored.
+ *  Everything beneath an ignored directory is ignored too, whatever the
+ *  later patterns say, as in Git.  Blank lines and lines starting with #
+ *  are skipped.  Rather than trying each pattern in turn, the matcher
+ *  compiles them all into one regular expression, whose alternatives run
+ *  from the last pattern to the first, so that a single match finds the
+ *  last pattern that applies.  Directories are matched with a / appended,
+ *  which only the patterns that may match a directory accept.
+ *  @author Keshav Sharma
+ */
+class IgnoreMatcher {
+
+    /** Name of the ignore file in the working directory. */
+    static final String FILE = ".gitletignore";
+
+    /** Returns the matcher for the ignore file of working directory
+     * WORKDIR, which ignores nothing if there is no such file.
+     * @param workDir : Working directory.
+     * */
+    static IgnoreMatcher read(File workDir) {
+        File file = Utils.join(workDir, FILE);
+        if (!file.isFile()) {
+            return new IgnoreMatcher(new ArrayList<String>());
+        }
+        return new IgnoreMatcher(Arrays.asList(
+                Utils.readContentsAsString(file).split("\r?\n")));
+    }
+
+    /** Matcher for the patterns LINES of an ignore file.
+     * @param lines : Lines of the ignore file.
+     * */
+    IgnoreMatcher(List<String> lines) {
+        StringBuilder regex = new StringBuilder();
+        ArrayList<Boolean> negated = new ArrayList<Boolean>();
+        for (int i = lines.size() - 1; i >= 0; i -= 1) {
+            String line = lines.get(i).trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            boolean negate = line.startsWith("!");
+            if (negate) {
+                line = line.substring(1);
+            }
+            String glob = translate(line);
+            if (glob == null) {
+                continue;
+            }
+            regex.append(regex.length() == 0 ? "" : "|")
+                .append('(').append(glob).append(')');
+            negated.add(negate);
+            _negations |= negate;
+        }
+        _negated = negated.toArray(new Boolean[0]);
+        _pattern = regex.length() == 0 ? null
+            : Pattern.compile(regex.toString());
+    }
+
+    /** Returns true iff PATH, or any directory above it, is ignored.
+     * The directories are tried from the top down, and the first one
+     * ignored ends the search.
+     * @param path : Path relative to the working directory, separated by
+     *             /.
+     * @param directory : True iff PATH is a directory.
+     * */
+    boolean ignored(String path, boolean directory) {
+        if (_pattern == null) {
+            return false;
+        }
+        for (int i = path.indexOf('/'); i > 0; i = path.indexOf('/', i + 1)) {
+            if (matches(path.substring(0, i), true)) {
+                return true;
+            }
+        }
+        return matches(path, directory);
+    }
+
+    /** Returns true iff PATH itself is ignored, whether or not the
+     * directories above it are, for callers that have already checked
+     * those.
+     * @param path : Path relative to the working directory, separated by
+     *             /.
+     * @param directory : True iff PATH is a directory.
+     * */
+    boolean matches(String path, boolean directory) {
+        if (_pattern == null) {
+            return false;
+        }
+        Matcher m = _pattern.matcher(directory ? path + "/" : path);
+        if (!m.matches()) {
+            return false;
+        } else if (!_negations) {
+            return true;
+        }
+        for (int i = 1; i <= _negated.length; i += 1) {
+            if (m.start(i) >= 0) {
+                return !_negated[i - 1];
+            }
+        }
+        return true;
+    }
+
+    /** Returns the regular expression, without capturing groups, for
+     * pattern GLOB of an ignore file, or null if it matches nothing.
+     * @param glob : Pattern without its leading !.
+     * */
+    private static String translate(String glob) {
+        boolean directory = glob.endsWith("/");
+        if (directory) {
+            glob = glob.substring(0, glob.length() - 1);
+        }
+        StringBuilder result = new StringBuilder();
+        if (glob.startsWith("/")) {
+            glob = glob.substring(1);
+        } else if (!glob.contains("/")) {
+            result.append("(?:.*/)?");
+        }
+        boolean inside = glob.length() > 3 && glob.endsWith("/**");
+        if (inside) {
+            glob = glob.substring(0, glob.length() - 3);
+        }
+        if (glob.isEmpty()) {
+            return null;
+        }
+        for (int i = 0; i < glob.length(); i += 1) {
+            char c = glob.charAt(i);
+            if (glob.startsWith("**/", i)) {
+                result.append("(?:.*/)?");
+                i += 2;
+            } else if (glob.startsWith("**", i)) {
+                result.append(".*");
+                i += 1;
+            } else if (c == '*') {
+                result.append("[^/]*");
+            } else if (c == '?') {
+                result.append("[^/]");
+            } else if (c == '[' && glob.indexOf(']', i + 2) > 0) {
+                int end = glob.indexOf(']', i + 2);
+                String set = glob.substring(i + 1, end);
+                if (set.startsWith("!")) {
+                    set = "^" + set.substring(1);
+                }
+                result.append('[').append(set.replace("\\", "\\\\")
+                                          .replace("[", "\\["))
+                    .append(']');
+                i = end;
+            } else if (c == '\\' && i + 1 < glob.length()) {
+                i += 1;
+                result.append(Pattern.quote(glob.substring(i, i + 1)));
+            } else {
+                result.append(Pattern.quote(String.valueOf(c)));
+            }
+        }
+        if (inside) {
+            result.append("/.+");
+        }
+        result.append(directory ? "/" : "/?");
+        return result.toString();
+    }
+
+    /** All patterns as one regular expression, or null if there are
+     * none. */
+    private final Pattern _pattern;
+
+    /** Whether each alternative of _pattern, in order, is negated. */
+    private final Boolean[] _negated;
+
+    /** True iff any pattern is negated. */
+    private boolean _negations;
+
+}
@@ -0,0 +1,184 @@
+package gitlet;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/** The lines of a file, found in place in a buffer holding its bytes,
+ *  which may be a memory mapping of the file.  A line is a run of bytes
+ *  ended by a newline, which belongs to the line, or by the end of the
+ *  file.  Lines are compared as bytes, so any encoding or binary data is
+ *  handled, and are written back out unchanged.
+ *  @author Keshav Sharma
+ */
+class Lines {
+
+    /** The lines of the bytes of DATA from its position to its limit.
+     * @param data : Contents of the file.
+     * */
+    Lines(ByteBuffer data) {
+        _data = data.slice();
+        int count = 0;
+        int limit = _data.limit();
+        for (int i = 0; i < limit; i += 1) {
+            if (_data.get(i) == '\n') {
+                count += 1;
+            }
+        }
+        if (limit > 0 && _data.get(limit - 1) != '\n') {
+            count += 1;
+        }
+        _ends = new int[count];
+        int k = 0;
+        for (int i = 0; i < limit; i += 1) {
+            if (_data.get(i) == '\n') {
+                _ends[k] = i + 1;
+                k += 1;
+            }
+        }
+        if (k < count) {
+            _ends[k] = limit;
+        }
+    }
+
+    /** The lines of DATA.
+     * @param data : Contents of the file.
+     * */
+    Lines(byte[] data) {
+        this(ByteBuffer.wrap(data));
+    }
+
+    /** Returns the number of lines. */
+    int size() {
+        return _ends.length;
+    }
+
+    /** Returns the offset of the first byte of line K.
+     * @param k : Index of a line.
+     * */
+    int start(int k) {
+        return k == 0 ? 0 : _ends[k - 1];
+    }
+
+    /** Returns the offset just past the last byte of line K.
+     * @param k : Index of a line.
+     * */
+    int end(int k) {
+        return _ends[k];
+    }
+
+    /** Returns true iff line K ends with a newline.
+     * @param k : Index of a line.
+     * */
+    boolean terminated(int k) {
+        return _data.get(_ends[k] - 1) == '\n';
+    }
+
+    /** Writes lines FROM .. TO-1 to OUT, exactly as they appear.
+     * @param out : Stream to write to.
+     * @param from : Index of the first line.
+     * @param to : One past the index of the last line.
+     * */
+    void write(OutputStream out, int from, int to) throws IOException {
+        if (from >= to) {
+            return;
+        }
+        int begin = start(from);
+        int length = end(to - 1) - begin;
+        if (_data.hasArray()) {
+            out.write(_data.array(), _data.arrayOffset() + begin, length);
+            return;
+        }
+        byte[] chunk = new byte[Math.min(length, Utils.BUFFER_SIZE)];
+        for (int done = 0; done < length; ) {
+            int n = Math.min(chunk.length, length - done);
+            _data.get(begin + done, chunk, 0, n);
+            out.write(chunk, 0, n);
+            done += n;
+        }
+    }
+
+    /** Returns, for each of FILES, the numbers of its lines, numbering
+     * lines so that two lines, in the same file or not, have the same
+     * number iff their bytes are equal.  Lines are looked up by hash in an
+     * open-addressed table of line numbers, so no object is made per line.
+     * @param files : Lines of the files to compare.
+     * */
+    static int[][] intern(Lines... files) {
+        int total = 0;
+        for (Lines lines : files) {
+            total += lines.size();
+        }
+        int capacity = Integer.highestOneBit(Math.max(2 * total, 1)) << 1;
+        int[] table = new int[capacity];
+        Arrays.fill(table, -1);
+        int[] hashes = new int[total];
+        Lines[] firstFile = new Lines[total];
+        int[] firstLine = new int[total];
+        int distinct = 0;
+        int[][] result = new int[files.length][];
+        for (int f = 0; f < files.length; f += 1) {
+            Lines lines = files[f];
+            result[f] = new int[lines.size()];
+            for (int k = 0; k < lines.size(); k += 1) {
+                int hash = lines.hash(k);
+                int slot = (hash ^ (hash >>> 16)) & (capacity - 1);
+                while (table[slot] >= 0) {
+                    int n = table[slot];
+                    if (hashes[n] == hash
+                            && lines.equals(k, firstFile[n], firstLine[n])) {
+                        break;
+                    }
+                    slot = (slot + 1) & (capacity - 1);
+                }
+                if (table[slot] < 0) {
+                    table[slot] = distinct;
+                    hashes[distinct] = hash;
+                    firstFile[distinct] = lines;
+                    firstLine[distinct] = k;
+                    distinct += 1;
+                }
+                result[f][k] = table[slot];
+            }
+        }
+        return result;
+    }
+
+    /** Returns a hash of the bytes of line K.
+     * @param k : Index of a line.
+     * */
+    private int hash(int k) {
+        int h = 1;
+        for (int i = start(k), end = end(k); i < end; i += 1) {
+            h = 31 * h + _data.get(i);
+        }
+        return h;
+    }
+
+    /** Returns true iff line K has the same bytes as line M of OTHER.
+     * @param k : Index of a line.
+     * @param other : Lines holding the other line.
+     * @param m : Index of the other line.
+     * */
+    private boolean equals(int k, Lines other, int m) {
+        int length = end(k) - start(k);
+        if (length != other.end(m) - other.start(m)) {
+            return false;
+        }
+        for (int i = 0, a = start(k), b = other.start(m); i < length;
+             i += 1) {
+            if (_data.get(a + i) != other._data.get(b + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Contents of the file. */
+    private final ByteBuffer _data;
+
+    /** Offset just past the end of each line. */
+    private final int[] _ends;
+
+}
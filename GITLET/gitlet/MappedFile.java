@@ -0,0 +1,128 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+
+/** Read-only view of a file of any size, such as an append-only log that
+ *  has grown past the 2 GiB a single mapping can hold.  Offsets are longs,
+ *  and the file is mapped into memory in windows of WINDOW bytes, each
+ *  mapped on first use.  Consecutive windows overlap by OVERLAP bytes, so
+ *  that any record no longer than that lies wholly inside one window and
+ *  is read in place; a longer record crossing the end of a window is
+ *  copied instead.  A window is mapped again when the file has grown past
+ *  its end and a record there is wanted.
+ *  @author Keshav Sharma
+ */
+class MappedFile {
+
+    /** Bytes per window. */
+    static final long WINDOW = 1L << 30;
+
+    /** Bytes by which consecutive windows overlap. */
+    static final int OVERLAP = 1 << 20;
+
+    /** View of FILE in windows of the default size.
+     * @param file : File to read.
+     * */
+    MappedFile(File file) {
+        this(file, WINDOW, OVERLAP);
+    }
+
+    /** View of FILE in windows of WINDOW bytes overlapping by OVERLAP.
+     * @param file : File to read.
+     * @param window : Bytes per window.
+     * @param overlap : Bytes by which consecutive windows overlap.
+     * */
+    MappedFile(File file, long window, int overlap) {
+        _file = file;
+        _window = window;
+        _overlap = overlap;
+        _maps = new HashMap<Long, MappedByteBuffer>();
+    }
+
+    /** Returns the LENGTH bytes at OFFSET, as a buffer whose position is 0.
+     * @param offset : Offset of the first byte in the file.
+     * @param length : Number of bytes.
+     * */
+    ByteBuffer slice(long offset, int length) {
+        long start = offset - offset % _window;
+        MappedByteBuffer map = window(start, offset + length);
+        if (offset + length <= start + map.capacity()) {
+            return map.slice((int) (offset - start), length);
+        }
+        return read(offset, length);
+    }
+
+    /** Returns the int at OFFSET.
+     * @param offset : Offset of its first byte in the file.
+     * */
+    int getInt(long offset) {
+        return slice(offset, Integer.BYTES).getInt(0);
+    }
+
+    /** Returns the long at OFFSET.
+     * @param offset : Offset of its first byte in the file.
+     * */
+    long getLong(long offset) {
+        return slice(offset, Long.BYTES).getLong(0);
+    }
+
+    /** Returns the window starting at START, mapping it again if it ends
+     * before END and the file has grown since it was mapped.
+     * @param start : Offset of the window, a multiple of _window.
+     * @param end : Offset just past the bytes wanted.
+     * */
+    private synchronized MappedByteBuffer window(long start, long end) {
+        MappedByteBuffer map = _maps.get(start);
+        if (map == null || (end > start + map.capacity()
+                            && map.capacity() < _window + _overlap)) {
+            try (FileChannel in = FileChannel.open(_file.toPath())) {
+                long size = Math.min(in.size() - start, _window + _overlap);
+                map = in.map(FileChannel.MapMode.READ_ONLY, start,
+                             Math.max(size, 0));
+            } catch (IOException excp) {
+                throw Utils.error("Cannot read %s: %s", _file.getName(),
+                        excp.getMessage());
+            }
+            _maps.put(start, map);
+        }
+        return map;
+    }
+
+    /** Returns the LENGTH bytes at OFFSET copied into a new buffer.
+     * @param offset : Offset of the first byte in the file.
+     * @param length : Number of bytes.
+     * */
+    private ByteBuffer read(long offset, int length) {
+        ByteBuffer result = ByteBuffer.allocate(length);
+        try (FileChannel in = FileChannel.open(_file.toPath())) {
+            while (result.hasRemaining()) {
+                if (in.read(result, offset + result.position()) < 0) {
+                    throw Utils.error("Cannot read %s: unexpected end",
+                            _file.getName());
+                }
+            }
+        } catch (IOException excp) {
+            throw Utils.error("Cannot read %s: %s", _file.getName(),
+                    excp.getMessage());
+        }
+        return result.flip();
+    }
+
+    /** File read. */
+    private final File _file;
+
+    /** Bytes per window. */
+    private final long _window;
+
+    /** Bytes by which consecutive windows overlap. */
+    private final int _overlap;
+
+    /** Each window mapped so far, by offset. */
+    private final HashMap<Long, MappedByteBuffer> _maps;
+
+}
@@ -0,0 +1,129 @@
+package gitlet;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/** Persisted index from commit messages to the commits that carry them.
+ *  The commits with a given message are listed, oldest first, as raw
+ *  UID_BYTES-byte ids in a file named by the SHA-1 of the message, fanned
+ *  out into subdirectories like the object store.  Looking a message up
+ *  therefore reads one small file, however long the history.  A counter
+ *  records how many commits of the commit store the index covers, so
+ *  commits added by any means are indexed by the next update.
+ *  @author Keshav Sharma
+ */
+class MessageIndex {
+
+    /** Index kept in directory DIR for the commits in COMMITS.
+     * @param dir : Directory holding the index.
+     * @param commits : Commit store being indexed.
+     * */
+    MessageIndex(File dir, CommitStore commits) {
+        _dir = dir;
+        _count = Utils.join(dir, "count");
+        _commits = commits;
+    }
+
+    /** Indexes every commit in the store that the index does not cover
+     * yet.  After a single commit this appends one id to one file. */
+    void update() {
+        int have = covered();
+        if (have >= _commits.size()) {
+            return;
+        }
+        for (int pos = have; pos < _commits.size(); pos += 1) {
+            String id = _commits.idAt(pos);
+            append(file(_commits.get(id).commitMessage()), id);
+        }
+        File temp = Utils.join(_dir, "count.tmp");
+        try {
+            Utils.writeContents(temp, ByteBuffer.allocate(Integer.BYTES)
+                                .putInt(_commits.size()).array());
+            Files.move(temp.toPath(), _count.toPath(),
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException excp) {
+            throw Utils.error("Cannot update message index: %s",
+                    excp.getMessage());
+        }
+    }
+
+    /** Returns the ids of the commits whose message is exactly MESSAGE,
+     * in the order they were made.
+     * @param message : Commit message to look for.
+     * */
+    List<String> find(String message) {
+        update();
+        ArrayList<String> result = new ArrayList<String>();
+        File file = file(message);
+        if (file.isFile()) {
+            byte[] ids = Utils.readContents(file);
+            for (int k = 0; k + Utils.UID_BYTES <= ids.length;
+                 k += Utils.UID_BYTES) {
+                result.add(Utils.toHex(ids, k));
+            }
+        }
+        return result;
+    }
+
+    /** Returns the number of commits covered by the index. */
+    private int covered() {
+        if (!_count.isFile()) {
+            return 0;
+        }
+        return ByteBuffer.wrap(Utils.readContents(_count)).getInt();
+    }
+
+    /** Returns the file listing the commits with message MESSAGE.
+     * @param message : A commit message.
+     * */
+    private File file(String message) {
+        String hash = Utils.sha1(message);
+        return Utils.join(_dir, hash.substring(0, 2), hash.substring(2));
+    }
+
+    /** Appends commit ID to FILE unless it is already its last entry, as
+     * after an update that was interrupted before recording its count.
+     * @param file : List of the commits with some message.
+     * @param id : Full SHA-1 of a commit.
+     * */
+    private void append(File file, String id) {
+        byte[] raw = Utils.fromHex(id);
+        file.getParentFile().mkdirs();
+        try {
+            if (file.length() >= Utils.UID_BYTES) {
+                try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+                    byte[] last = new byte[Utils.UID_BYTES];
+                    in.seek(file.length() - Utils.UID_BYTES);
+                    in.readFully(last);
+                    if (Arrays.equals(last, raw)) {
+                        return;
+                    }
+                }
+            }
+            try (FileOutputStream out = new FileOutputStream(file, true)) {
+                out.write(raw);
+            }
+        } catch (IOException excp) {
+            throw Utils.error("Cannot update message index: %s",
+                    excp.getMessage());
+        }
+    }
+
+    /** Directory holding the index. */
+    private final File _dir;
+
+    /** File holding the number of commits covered. */
+    private final File _count;
+
+    /** Commit store being indexed. */
+    private final CommitStore _commits;
+
+}
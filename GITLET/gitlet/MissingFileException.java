@@ -0,0 +1,14 @@
+package gitlet;
+
+/** Exception indicating that a file a command names is neither in the working
+ *  directory nor in the commit it names.
+ *  @author Keshav Sharma
+ */
+public class MissingFileException extends GitletException {
+
+    /** A MissingFileException with MSG as its message. */
+    MissingFileException(String msg) {
+        super(msg);
+    }
+
+}
@@ -0,0 +1,13 @@
+package gitlet;
+
+/** Exception indicating that a command needs a repository where there is none.
+ *  @author Keshav Sharma
+ */
+public class NoRepositoryException extends GitletException {
+
+    /** A NoRepositoryException with MSG as its message. */
+    NoRepositoryException(String msg) {
+        super(msg);
+    }
+
+}
@@ -0,0 +1,13 @@
+package gitlet;
+
+/** Exception indicating that a command names a branch that does not exist.
+ *  @author Keshav Sharma
+ */
+public class NoSuchBranchException extends GitletException {
+
+    /** A NoSuchBranchException with MSG as its message. */
+    NoSuchBranchException(String msg) {
+        super(msg);
+    }
+
+}
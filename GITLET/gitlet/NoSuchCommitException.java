@@ -0,0 +1,14 @@
+package gitlet;
+
+/** Exception indicating that no commit matches the id or message a command
+ *  was given.
+ *  @author Keshav Sharma
+ */
+public class NoSuchCommitException extends GitletException {
+
+    /** A NoSuchCommitException with MSG as its message. */
+    NoSuchCommitException(String msg) {
+        super(msg);
+    }
+
+}
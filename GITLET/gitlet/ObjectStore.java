@@ -0,0 +1,572 @@
+package gitlet;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Deflater;
+
+/** Content-addressed store of objects kept under .gitlet/objects.
+ *  Every new object is stored once, as a loose object in a file named by
+ *  the last 38 hex digits of its SHA-1 inside a fan-out directory named by
+ *  the first two, so a command only ever opens the objects it actually
+ *  needs.  An object file holds the id byte of the Codec chosen for the
+ *  object followed by the object compressed with it; the SHA-1 is that of
+ *  the uncompressed bytes.  Objects may also be moved by Repacker into
+ *  Packs in the PACK_DIR directory, where they are looked up whenever they
+ *  are not loose.  The bases of packed deltas are kept in a small cache,
+ *  since consecutive versions of a file share their bases.  Objects too
+ *  big to be read whole are never packed, so they are always streamed,
+ *  mapped or copied straight from their own files.
+ *  @author Keshav Sharma
+ */
+class ObjectStore {
+
+    /** Length of the fan-out directory prefix of an object id. */
+    static final int FANOUT_LENGTH = 2;
+
+    /** Name of the file recording the format version of the store. */
+    static final String FORMAT = "format";
+
+    /** Format version of stores whose objects start with a codec id. */
+    static final int VERSION = 2;
+
+    /** Name of the directory of pack files. */
+    static final String PACK_DIR = "pack";
+
+    /** Most bytes of delta bases kept in the cache. */
+    static final long BASE_CACHE_SIZE = 16L << 20;
+
+    /** Size of the largest compressed object that map inflates onto the
+     * heap; larger ones are inflated into a temporary file and mapped. */
+    static final int MAP_IN_MEMORY = 8 << 20;
+
+    /** Object store rooted at DIR.
+     * @param dir : Directory holding the fan-out directories.
+     * */
+    ObjectStore(File dir) {
+        _dir = dir;
+    }
+
+    /** Creates the root directory of the store if it is missing, and
+     * converts a store written before objects had codecs by giving each of
+     * its objects a codec.  An object is converted only if its file still
+     * hashes to its id, so an interrupted conversion is simply resumed. */
+    void create() {
+        _dir.mkdirs();
+        File format = new File(_dir, FORMAT);
+        if (format.isFile()) {
+            return;
+        }
+        for (String id : ids()) {
+            byte[] raw = Utils.readContents(file(id));
+            if (Utils.sha1(raw).equals(id)) {
+                write(id, raw, true);
+            }
+        }
+        Utils.writeContents(format, Integer.toString(VERSION));
+    }
+
+    /** Sets the deflate level of the objects written from now on.
+     * @param level : Level from 0, for no compression, to 9.
+     * */
+    void level(int level) {
+        if (level < 0 || level > Deflater.BEST_COMPRESSION) {
+            throw Utils.error("Compression level must be 0 to 9.");
+        }
+        _level = level;
+    }
+
+    /** Returns the level at which new objects are deflated. */
+    int level() {
+        return _level;
+    }
+
+    /** Returns the directory this store lives in. */
+    File dir() {
+        return _dir;
+    }
+
+    /** Returns the file holding object ID, whether or not it exists.
+     * @param id : Full SHA-1 of the object.
+     * */
+    File file(String id) {
+        return Utils.join(_dir, id.substring(0, FANOUT_LENGTH),
+                id.substring(FANOUT_LENGTH));
+    }
+
+    /** Returns true iff object ID is in the store.
+     * @param id : Full SHA-1 of the object.
+     * */
+    boolean contains(String id) {
+        return file(id).isFile() || pack(id) != null;
+    }
+
+    /** Returns true iff object ID is in the store, setting the
+     * modification time of its loose file to now.  A collection already
+     * running deletes only objects older than its start, so this keeps an
+     * unreachable object that is about to be used again, such as a blob
+     * staged once more, from being deleted under the caller.
+     * @param id : Full SHA-1 of the object.
+     * */
+    boolean freshen(String id) {
+        return file(id).setLastModified(System.currentTimeMillis())
+            || pack(id) != null;
+    }
+
+    /** Stores CONTENTS under ID unless an object with that id already
+     * exists, in which case that object is freshened.  The object is
+     * written to a temporary file first and renamed into place, so
+     * readers never see a partially written object.
+     * @param id : SHA-1 of CONTENTS.
+     * @param contents : Bytes of the object.
+     * */
+    void put(String id, byte[] contents) {
+        write(id, contents, false);
+    }
+
+    /** Stores CONTENTS under ID, replacing any object with that id iff
+     * REPLACE.
+     * @param id : SHA-1 of CONTENTS.
+     * @param contents : Bytes of the object.
+     * @param replace : True iff an existing object file is rewritten.
+     * */
+    private void write(String id, byte[] contents, boolean replace) {
+        File target = file(id);
+        if (!replace && freshen(id)) {
+            return;
+        }
+        File bucket = target.getParentFile();
+        bucket.mkdirs();
+        Codec codec = Codec.choose(contents, contents.length,
+                                   contents.length, _level);
+        try {
+            File temp = File.createTempFile("tmp-", null, bucket);
+            try (OutputStream out = codec.compress(
+                    open(new FileOutputStream(temp), codec))) {
+                out.write(contents);
+            }
+            Files.move(temp.toPath(), target.toPath(),
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException excp) {
+            throw Utils.error("Cannot write object %s: %s", id,
+                    excp.getMessage());
+        }
+    }
+
+    /** Returns OUT after writing the id byte of CODEC to it.
+     * @param out : Stream for a new object file.
+     * @param codec : Codec of the object.
+     * */
+    private static OutputStream open(OutputStream out, Codec codec)
+        throws IOException {
+        out.write(codec.id());
+        return out;
+    }
+
+    /** Stores the contents of FILE unless they are already stored, in
+     * which case they are freshened, and returns their SHA-1.  The file
+     * is read once, through a fixed-size buffer that feeds both the
+     * digest and a temporary object file, so memory use does not depend
+     * on the size of the file and any bytes, text or not, are kept
+     * exactly.  The codec is chosen from the first buffer read.
+     * @param file : Plain file to store.
+     * */
+    String put(File file) {
+        MessageDigest md = Utils.sha1Digest();
+        File temp;
+        try {
+            _dir.mkdirs();
+            temp = File.createTempFile("tmp-", null, _dir);
+            try (InputStream in = new FileInputStream(file)) {
+                byte[] buffer = new byte[Utils.BUFFER_SIZE];
+                int n = in.readNBytes(buffer, 0, buffer.length);
+                Codec codec = Codec.choose(buffer, n, file.length(), _level);
+                try (OutputStream out = codec.compress(
+                        open(new FileOutputStream(temp), codec))) {
+                    for (; n > 0; n = in.read(buffer)) {
+                        md.update(buffer, 0, n);
+                        out.write(buffer, 0, n);
+                    }
+                }
+            }
+        } catch (IOException excp) {
+            throw Utils.error("Cannot store %s: %s", file,
+                    excp.getMessage());
+        }
+        String id = Utils.toHex(md.digest(), 0);
+        File target = file(id);
+        try {
+            if (freshen(id)) {
+                Files.delete(temp.toPath());
+            } else {
+                target.getParentFile().mkdirs();
+                Files.move(temp.toPath(), target.toPath(),
+                        StandardCopyOption.ATOMIC_MOVE);
+            }
+        } catch (IOException excp) {
+            throw Utils.error("Cannot write object %s: %s", id,
+                    excp.getMessage());
+        }
+        return id;
+    }
+
+    /** Returns the contents of object ID.
+     * @param id : Full SHA-1 of the object.
+     * */
+    byte[] get(String id) {
+        try (InputStream in = read(id)) {
+            return in.readAllBytes();
+        } catch (IOException excp) {
+            throw Utils.error("Cannot read object %s: %s", id,
+                    excp.getMessage());
+        }
+    }
+
+    /** Returns a stream of the contents of object ID.
+     * @param id : Full SHA-1 of the object.
+     * */
+    InputStream read(String id) throws IOException {
+        InputStream in;
+        try {
+            in = new BufferedInputStream(new FileInputStream(file(id)),
+                                         Utils.BUFFER_SIZE);
+        } catch (FileNotFoundException excp) {
+            return new ByteArrayInputStream(packed(id));
+        }
+        int codec = in.read();
+        return Codec.forId((byte) codec).decompress(in);
+    }
+
+    /** Returns the contents of object ID, which is the base of a packed
+     * delta, from the cache of bases if it is there.
+     * @param id : Full SHA-1 of the object.
+     * */
+    byte[] base(String id) {
+        synchronized (_bases) {
+            byte[] cached = _bases.get(id);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        byte[] result = get(id);
+        synchronized (_bases) {
+            if (_bases.put(id, result) == null) {
+                _basesSize += result.length;
+            }
+            Iterator<Map.Entry<String, byte[]>> eldest =
+                _bases.entrySet().iterator();
+            while (_basesSize > BASE_CACHE_SIZE && eldest.hasNext()) {
+                _basesSize -= eldest.next().getValue().length;
+                eldest.remove();
+            }
+        }
+        return result;
+    }
+
+    /** Returns true iff object ID holds more than LIMIT bytes.  No more
+     * than about LIMIT bytes of a loose object are inflated to find out.
+     * @param id : Full SHA-1 of the object.
+     * @param limit : Number of bytes.
+     * */
+    boolean larger(String id, long limit) {
+        if (!file(id).isFile()) {
+            return packed(id).length > limit;
+        }
+        try (InputStream in = read(id)) {
+            byte[] buffer = new byte[Utils.BUFFER_SIZE];
+            long size = 0;
+            for (int n; size <= limit && (n = in.read(buffer)) > 0; ) {
+                size += n;
+            }
+            return size > limit;
+        } catch (IOException excp) {
+            throw Utils.error("Cannot read object %s: %s", id,
+                    excp.getMessage());
+        }
+    }
+
+    /** Writes object ID as a loose object if it is only packed.
+     * @param id : Full SHA-1 of the object.
+     * */
+    void unpack(String id) {
+        if (!file(id).isFile()) {
+            write(id, packed(id), true);
+        }
+    }
+
+    /** Returns the contents of packed object ID.
+     * @param id : Full SHA-1 of the object.
+     * */
+    private byte[] packed(String id) {
+        Pack pack = pack(id);
+        if (pack == null) {
+            throw Utils.error("Missing object %s.", id);
+        }
+        return pack.read(id, this);
+    }
+
+    /** Returns the pack holding object ID, or null if no pack does.  The
+     * pack directory is listed again when it has changed since it was
+     * last listed, so packs written by other processes are found.
+     * @param id : Full SHA-1 of the object.
+     * */
+    private Pack pack(String id) {
+        for (Pack pack : packs()) {
+            if (pack.contains(id)) {
+                return pack;
+            }
+        }
+        return null;
+    }
+
+    /** Forgets the packs listed so far, so that the pack directory is
+     * listed again before the next lookup. */
+    synchronized void rescan() {
+        _packs = null;
+    }
+
+    /** Returns the packs of the store, newest first. */
+    synchronized List<Pack> packs() {
+        File dir = new File(_dir, PACK_DIR);
+        long modified = dir.lastModified();
+        if (_packs == null || modified != _packsModified) {
+            _packsModified = modified;
+            File[] indexes = dir.listFiles((d, name) -> name.endsWith(".idx"));
+            ArrayList<Pack> packs = new ArrayList<Pack>();
+            if (indexes != null) {
+                Arrays.sort(indexes, (a, b) -> Long.compare(b.lastModified(),
+                                                            a.lastModified()));
+                for (File index : indexes) {
+                    packs.add(new Pack(index));
+                }
+            }
+            _packs = packs;
+        }
+        return _packs;
+    }
+
+    /** Returns the contents of object ID, mapped read-only into memory if
+     * the object is stored uncompressed.  A compressed object of up to
+     * MAP_IN_MEMORY bytes is inflated onto the heap, and a larger one
+     * into a temporary file, which is mapped and then deleted, so no
+     * large object is ever held whole on the heap.
+     * @param id : Full SHA-1 of the object.
+     * */
+    ByteBuffer map(String id) {
+        File source = file(id);
+        if (!source.isFile()) {
+            return ByteBuffer.wrap(packed(id));
+        }
+        try (FileChannel in = FileChannel.open(source.toPath(),
+                                               StandardOpenOption.READ)) {
+            ByteBuffer codec = ByteBuffer.allocate(1);
+            in.read(codec, 0);
+            if (codec.get(0) == Codec.NONE_ID) {
+                return map(id, in, 1);
+            }
+        } catch (IOException excp) {
+            throw Utils.error("Cannot read object %s: %s", id,
+                    excp.getMessage());
+        }
+        try (InputStream in = read(id)) {
+            byte[] head = in.readNBytes(MAP_IN_MEMORY + 1);
+            if (head.length <= MAP_IN_MEMORY) {
+                return ByteBuffer.wrap(head);
+            }
+            File temp = File.createTempFile("tmp-", null, _dir);
+            try {
+                try (OutputStream out = new FileOutputStream(temp)) {
+                    out.write(head);
+                    in.transferTo(out);
+                }
+                try (FileChannel inflated = FileChannel.open(
+                        temp.toPath(), StandardOpenOption.READ)) {
+                    return map(id, inflated, 0);
+                }
+            } finally {
+                if (!temp.delete()) {
+                    temp.deleteOnExit();
+                }
+            }
+        } catch (IOException excp) {
+            throw Utils.error("Cannot read object %s: %s", id,
+                    excp.getMessage());
+        }
+    }
+
+    /** Returns the bytes of IN from START to its end, the contents of
+     * object ID, mapped read-only into memory.
+     * @param id : Full SHA-1 of the object.
+     * @param in : Channel of a file holding the object.
+     * @param start : Offset of the contents in the file.
+     * */
+    private static ByteBuffer map(String id, FileChannel in, long start)
+        throws IOException {
+        long size = in.size() - start;
+        if (size > Integer.MAX_VALUE) {
+            throw Utils.error("Object %s is too large to map.", id);
+        }
+        return in.map(FileChannel.MapMode.READ_ONLY, start, size);
+    }
+
+    /** Overwrites TARGET with the contents of object ID.  The bytes of an
+     * uncompressed object are moved from the object file to TARGET by the
+     * file system with FileChannel.transferTo, without being copied
+     * through the Java heap; others, packed ones included, are inflated
+     * through a buffer.
+     * @param id : Full SHA-1 of the object.
+     * @param target : File to create or overwrite.
+     * */
+    void copyTo(String id, File target) {
+        File source = file(id);
+        if (!source.isFile()) {
+            Pack pack = pack(id);
+            if (pack == null) {
+                throw Utils.error("Missing object %s.", id);
+            }
+            try (OutputStream out = new BufferedOutputStream(
+                    new FileOutputStream(target), Utils.BUFFER_SIZE)) {
+                pack.write(id, this, out);
+            } catch (IOException excp) {
+                throw Utils.error("Cannot write %s: %s", target,
+                        excp.getMessage());
+            }
+            return;
+        }
+        try (FileChannel in = FileChannel.open(source.toPath(),
+                                               StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(target.toPath(),
+                     StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+                     StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer codec = ByteBuffer.allocate(1);
+            in.read(codec, 0);
+            if (codec.get(0) != Codec.NONE_ID) {
+                try (InputStream contents = read(id)) {
+                    contents.transferTo(Channels.newOutputStream(out));
+                }
+                return;
+            }
+            long size = in.size();
+            for (long pos = 1; pos < size; ) {
+                pos += in.transferTo(pos, size - pos, out);
+            }
+        } catch (IOException excp) {
+            throw Utils.error("Cannot write %s: %s", target,
+                    excp.getMessage());
+        }
+    }
+
+    /** Returns the ids of all loose objects in the store, in sorted
+     * order. */
+    String[] ids() {
+        ArrayList<String> result = new ArrayList<String>();
+        File[] buckets = _dir.listFiles();
+        if (buckets == null) {
+            return new String[0];
+        }
+        for (File bucket : buckets) {
+            if (!bucket.isDirectory()
+                    || bucket.getName().length() != FANOUT_LENGTH) {
+                continue;
+            }
+            String[] names = bucket.list();
+            if (names == null) {
+                continue;
+            }
+            for (String name : names) {
+                if (name.length() == Utils.UID_LENGTH - FANOUT_LENGTH) {
+                    result.add(bucket.getName() + name);
+                }
+            }
+        }
+        String[] ids = result.toArray(new String[0]);
+        Arrays.sort(ids);
+        return ids;
+    }
+
+    /** Deletes object ID, and its fan-out directory if that is left
+     * empty.  Returns the number of bytes freed.
+     * @param id : Full SHA-1 of the object.
+     * */
+    long delete(String id) {
+        File target = file(id);
+        long size = target.length();
+        if (!target.delete()) {
+            return 0;
+        }
+        target.getParentFile().delete();
+        return size;
+    }
+
+    /** Deletes the temporary files left in the store by writes that
+     * never finished, if they were last modified before time BEFORE.
+     * @param before : Time in milliseconds since the epoch.
+     * */
+    void deleteTemporaries(long before) {
+        File[] buckets = _dir.listFiles();
+        if (buckets == null) {
+            return;
+        }
+        ArrayList<File> dirs = new ArrayList<File>(Arrays.asList(buckets));
+        dirs.add(_dir);
+        for (File dir : dirs) {
+            File[] files = dir.listFiles((d, name) -> name.startsWith("tmp-"));
+            if (files == null) {
+                continue;
+            }
+            for (File temp : files) {
+                if (temp.lastModified() < before) {
+                    temp.delete();
+                }
+            }
+        }
+    }
+
+    /** Returns the contents of object ID decoded as UTF-8.
+     * @param id : Full SHA-1 of the object.
+     * */
+    String getAsString(String id) {
+        return new String(get(id), StandardCharsets.UTF_8);
+    }
+
+    /** Root directory of the store. */
+    private final File _dir;
+
+    /** Deflate level of new objects. */
+    private int _level = Codec.DEFAULT_LEVEL;
+
+    /** Packs of the store, newest first, or null if not yet listed. */
+    private List<Pack> _packs;
+
+    /** Modification time of the pack directory when it was listed. */
+    private long _packsModified;
+
+    /** Cache of delta bases by id, least recently used first. */
+    private final LinkedHashMap<String, byte[]> _bases =
+        new LinkedHashMap<String, byte[]>(16, 0.75f, true);
+
+    /** Total size of the cached delta bases. */
+    private long _basesSize;
+
+}
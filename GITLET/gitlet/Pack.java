@@ -0,0 +1,444 @@
+package gitlet;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/** A pack file of objects, with the index that locates them.  The pack
+ *  holds a header followed by one entry per object: a kind byte, the
+ *  varint length of the entry's data once inflated, for a delta the
+ *  UID_BYTES raw bytes of the id of its base, and the varint length and
+ *  bytes of the deflated data.  The data of a FULL entry is the object
+ *  itself, and that of a DELTA entry is a Delta against its base, which
+ *  is found by id in the object store and may itself be a delta.  The
+ *  index, named like the pack with .idx in place of .pack, holds a fan-out
+ *  table of the number of ids up to each first byte, the sorted raw ids,
+ *  and the offset of each object's entry, so any object is found with a
+ *  binary search among the ids sharing its first byte.  The index is
+ *  mapped into memory whole, and the pack in windows by a MappedFile, so
+ *  offsets are longs and a pack of any size is read in place.
+ *  @author Keshav Sharma
+ */
+class Pack {
+
+    /** First bytes of a pack file. */
+    static final int PACK_MAGIC = 0x47504b31;
+
+    /** First bytes of a pack index. */
+    static final int INDEX_MAGIC = 0x47494431;
+
+    /** Size of the header of a pack file. */
+    static final int HEADER_SIZE = Integer.BYTES;
+
+    /** Number of entries of the fan-out table of an index. */
+    static final int FANOUT = 256;
+
+    /** Kind of an entry holding a whole object. */
+    static final byte FULL = 0;
+
+    /** Kind of an entry holding a delta against another object. */
+    static final byte DELTA = 1;
+
+    /** Longest header of an entry: a kind byte, two varints and an id. */
+    static final int MAX_HEADER = 1 + 2 * 5 + Utils.UID_BYTES;
+
+    /** Pack indexed by INDEX.
+     * @param index : Index file of the pack.
+     * */
+    Pack(File index) {
+        _index = index;
+        String name = index.getName();
+        _file = new File(index.getParentFile(),
+                name.substring(0, name.length() - ".idx".length())
+                + ".pack");
+        _indexMap = map(_index);
+        if (_indexMap.getInt(0) != INDEX_MAGIC) {
+            throw Utils.error("Corrupt pack index %s.", index);
+        }
+        _size = fanout(FANOUT - 1);
+        _map = new MappedFile(_file);
+        _length = _file.length();
+    }
+
+    /** Returns the index file of this pack. */
+    File index() {
+        return _index;
+    }
+
+    /** Returns the pack file of this pack. */
+    File file() {
+        return _file;
+    }
+
+    /** Returns the number of objects in this pack. */
+    int size() {
+        return _size;
+    }
+
+    /** Returns the id of the Kth object of this pack in id order.
+     * @param k : Index of the object.
+     * */
+    String idAt(int k) {
+        byte[] raw = new byte[Utils.UID_BYTES];
+        _indexMap.get(idOffset(k), raw);
+        return Utils.toHex(raw, 0);
+    }
+
+    /** Returns true iff object ID is in this pack.
+     * @param id : Full SHA-1 of the object.
+     * */
+    boolean contains(String id) {
+        return find(id) >= 0;
+    }
+
+    /** Returns the contents of object ID, which must be in this pack,
+     * reading the base of a delta from STORE.
+     * @param id : Full SHA-1 of the object.
+     * @param store : Object store holding the bases of deltas.
+     * */
+    byte[] read(String id, ObjectStore store) {
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        try {
+            write(id, store, result);
+        } catch (IOException excp) {
+            throw Utils.error("Cannot read object %s: %s", id,
+                    excp.getMessage());
+        }
+        return result.toByteArray();
+    }
+
+    /** Writes the contents of object ID, which must be in this pack, to
+     * OUT, reading the base of a delta from STORE.  A whole object is
+     * inflated straight from the pack to OUT, and a delta is applied to
+     * its base as it is written, so the object is never held whole.
+     * @param id : Full SHA-1 of the object.
+     * @param store : Object store holding the bases of deltas.
+     * @param out : Stream for the contents.
+     * */
+    void write(String id, ObjectStore store, OutputStream out)
+        throws IOException {
+        long offset = offset(id);
+        ByteBuffer in = header(offset);
+        byte kind = in.get();
+        int length = CommitCodec.readVarint(in);
+        String base = null;
+        if (kind == DELTA) {
+            byte[] raw = new byte[Utils.UID_BYTES];
+            in.get(raw);
+            base = Utils.toHex(raw, 0);
+        } else if (kind != FULL) {
+            throw Utils.error("Corrupt pack %s.", _file);
+        }
+        int deflated = CommitCodec.readVarint(in);
+        ByteBuffer data = _map.slice(offset + in.position(), deflated);
+        if (base == null) {
+            inflate(data, length, out);
+            return;
+        }
+        ByteArrayOutputStream delta = new ByteArrayOutputStream(length);
+        inflate(data, length, delta);
+        Delta.apply(store.base(base), ByteBuffer.wrap(delta.toByteArray()),
+                    out);
+    }
+
+    /** Writes the LENGTH bytes inflated from DATA to OUT.
+     * @param data : Deflated bytes of an entry.
+     * @param length : Length of the entry once inflated.
+     * @param out : Stream for the inflated bytes.
+     * */
+    private void inflate(ByteBuffer data, int length, OutputStream out)
+        throws IOException {
+        byte[] buffer = new byte[Math.min(length, Utils.BUFFER_SIZE)];
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data);
+            for (int n = 0; n < length; ) {
+                int got = inflater.inflate(buffer, 0,
+                        Math.min(buffer.length, length - n));
+                if (got == 0 && (inflater.finished()
+                                 || inflater.needsInput())) {
+                    throw Utils.error("Corrupt pack %s.", _file);
+                }
+                out.write(buffer, 0, got);
+                n += got;
+            }
+        } catch (DataFormatException excp) {
+            throw Utils.error("Corrupt pack %s.", _file);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /** Returns the offset in the pack of the entry of object ID, which
+     * must be in this pack.
+     * @param id : Full SHA-1 of the object.
+     * */
+    private long offset(String id) {
+        int k = find(id);
+        if (k < 0) {
+            throw Utils.error("Missing object %s.", id);
+        }
+        long offset = _indexMap.getLong(offsetOffset(k));
+        if (offset < HEADER_SIZE || offset >= _length) {
+            throw Utils.error("Corrupt pack %s.", _file);
+        }
+        return offset;
+    }
+
+    /** Returns the entry at OFFSET, as a buffer whose position is 0 and
+     * that holds at least the whole header of the entry.
+     * @param offset : Offset of the entry in the pack.
+     * */
+    private ByteBuffer header(long offset) {
+        return _map.slice(offset, (int) Math.min(MAX_HEADER,
+                                                 _length - offset));
+    }
+
+    /** Returns the index of object ID in id order, or -1.
+     * @param id : Full SHA-1 of the object.
+     * */
+    private int find(String id) {
+        byte[] raw = Utils.fromHex(id);
+        int first = raw[0] & 0xff;
+        int lo = first == 0 ? 0 : fanout(first - 1);
+        int hi = fanout(first) - 1;
+        byte[] probe = new byte[Utils.UID_BYTES];
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            _indexMap.get(idOffset(mid), probe);
+            int c = Arrays.compareUnsigned(probe, raw);
+            if (c < 0) {
+                lo = mid + 1;
+            } else if (c > 0) {
+                hi = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    /** Returns the number of ids whose first byte is at most B.
+     * @param b : First byte of an id, from 0 to 255.
+     * */
+    private int fanout(int b) {
+        return _indexMap.getInt(Integer.BYTES * (b + 1));
+    }
+
+    /** Returns the offset in the index of the Kth id.
+     * @param k : Index of the object.
+     * */
+    private int idOffset(int k) {
+        return Integer.BYTES * (FANOUT + 1) + k * Utils.UID_BYTES;
+    }
+
+    /** Returns the offset in the index of the Kth entry offset.
+     * @param k : Index of the object.
+     * */
+    private int offsetOffset(int k) {
+        return idOffset(_size) + k * Long.BYTES;
+    }
+
+    /** Returns FILE mapped read-only into memory.
+     * @param file : File to map.
+     * */
+    private static MappedByteBuffer map(File file) {
+        try (FileChannel in = FileChannel.open(file.toPath())) {
+            return in.map(FileChannel.MapMode.READ_ONLY, 0, in.size());
+        } catch (IOException excp) {
+            throw Utils.error("Cannot read pack %s: %s", file,
+                    excp.getMessage());
+        }
+    }
+
+    /** Writer of new packs into a directory.  Entries are written to a
+     * temporary pack as they are added, and a pack is given its name and
+     * index when it is finished.  A pack is finished, and another begun,
+     * before an entry would take it past its largest size, so only a pack
+     * holding a single entry may be larger. */
+    static class Writer {
+
+        /** Default largest size of a pack. */
+        static final long MAX_SIZE = 1L << 30;
+
+        /** Writer of packs into DIR, deflating at LEVEL.
+         * @param dir : Directory to hold the packs.
+         * @param level : Deflate level of the entries.
+         * */
+        Writer(File dir, int level) {
+            this(dir, level, MAX_SIZE);
+        }
+
+        /** Writer of packs of at most MAXSIZE bytes into DIR, deflating
+         * at LEVEL.
+         * @param dir : Directory to hold the packs.
+         * @param level : Deflate level of the entries.
+         * @param maxSize : Largest size of a pack.
+         * */
+        Writer(File dir, int level, long maxSize) {
+            _dir = dir;
+            _deflater = new Deflater(level);
+            _maxSize = maxSize;
+        }
+
+        /** Adds object ID, whose contents are DATA if BASE is null, or
+         * else whose delta against object BASE is DATA.
+         * @param id : Full SHA-1 of the object.
+         * @param base : Full SHA-1 of the base of the delta, or null.
+         * @param data : Contents or delta.
+         * */
+        void add(String id, String base, byte[] data) throws IOException {
+            _deflater.reset();
+            _deflater.setInput(data);
+            _deflater.finish();
+            ByteArrayOutputStream deflated = new ByteArrayOutputStream();
+            byte[] buffer = new byte[Utils.BUFFER_SIZE];
+            while (!_deflater.finished()) {
+                deflated.write(buffer, 0, _deflater.deflate(buffer));
+            }
+            ByteArrayOutputStream header = new ByteArrayOutputStream();
+            header.write(base == null ? FULL : DELTA);
+            CommitCodec.writeVarint(header, data.length);
+            if (base != null) {
+                header.writeBytes(Utils.fromHex(base));
+            }
+            CommitCodec.writeVarint(header, deflated.size());
+            long size = header.size() + deflated.size();
+            if (_out != null && _offset + size > _maxSize) {
+                finishPack();
+            }
+            if (_out == null) {
+                startPack();
+            }
+            _ids.add(id);
+            _offsets.add(_offset);
+            header.writeTo(_out);
+            deflated.writeTo(_out);
+            _offset += size;
+        }
+
+        /** Finishes the pack being written and returns the index files of
+         * every pack written. */
+        ArrayList<File> finish() throws IOException {
+            finishPack();
+            _deflater.end();
+            return _written;
+        }
+
+        /** Starts a new pack in a temporary file. */
+        private void startPack() throws IOException {
+            _dir.mkdirs();
+            _temp = File.createTempFile("tmp-", null, _dir);
+            _out = new DataOutputStream(new BufferedOutputStream(
+                    new FileOutputStream(_temp), Utils.BUFFER_SIZE));
+            _out.writeInt(PACK_MAGIC);
+            _offset = HEADER_SIZE;
+            _ids = new ArrayList<String>();
+            _offsets = new ArrayList<Long>();
+        }
+
+        /** Writes the index of the pack being written, if any, and moves
+         * both files to their names, the pack first, so that a pack is
+         * visible only once it is complete. */
+        private void finishPack() throws IOException {
+            if (_out == null) {
+                return;
+            }
+            _out.close();
+            _out = null;
+            Integer[] order = new Integer[_ids.size()];
+            for (int k = 0; k < order.length; k += 1) {
+                order[k] = k;
+            }
+            Arrays.sort(order, (a, b) -> _ids.get(a).compareTo(_ids.get(b)));
+            String name = "pack-" + Utils.sha1(String.join("", _ids));
+            File index = File.createTempFile("tmp-", null, _dir);
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(index),
+                                             Utils.BUFFER_SIZE))) {
+                out.writeInt(INDEX_MAGIC);
+                int[] fanout = new int[FANOUT];
+                for (String id : _ids) {
+                    fanout[Integer.parseInt(id.substring(0, 2), 16)] += 1;
+                }
+                for (int b = 0, sum = 0; b < FANOUT; b += 1) {
+                    sum += fanout[b];
+                    out.writeInt(sum);
+                }
+                for (int k : order) {
+                    out.write(Utils.fromHex(_ids.get(k)));
+                }
+                for (int k : order) {
+                    out.writeLong(_offsets.get(k));
+                }
+            }
+            Files.move(_temp.toPath(),
+                    new File(_dir, name + ".pack").toPath(),
+                    StandardCopyOption.ATOMIC_MOVE);
+            File target = new File(_dir, name + ".idx");
+            Files.move(index.toPath(), target.toPath(),
+                    StandardCopyOption.ATOMIC_MOVE);
+            _written.add(target);
+        }
+
+        /** Directory holding the packs. */
+        private final File _dir;
+
+        /** Deflater of entries. */
+        private final Deflater _deflater;
+
+        /** Largest size of a pack. */
+        private final long _maxSize;
+
+        /** Index files of the packs finished so far. */
+        private final ArrayList<File> _written = new ArrayList<File>();
+
+        /** Temporary file of the pack being written. */
+        private File _temp;
+
+        /** Stream of the pack being written, or null if there is none. */
+        private DataOutputStream _out;
+
+        /** Offset of the next entry of the pack being written. */
+        private long _offset;
+
+        /** Ids of the entries of the pack being written, in order. */
+        private ArrayList<String> _ids;
+
+        /** Offsets of the entries of the pack being written, in order. */
+        private ArrayList<Long> _offsets;
+    }
+
+    /** Index file of the pack. */
+    private final File _index;
+
+    /** Pack file. */
+    private final File _file;
+
+    /** Number of objects in the pack. */
+    private final int _size;
+
+    /** Memory-mapped index. */
+    private final MappedByteBuffer _indexMap;
+
+    /** Length of the pack file. */
+    private final long _length;
+
+    /** Pack, mapped in windows. */
+    private final MappedFile _map;
+
+}
@@ -0,0 +1,220 @@
+package gitlet;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+
+/** Persisted reachability bitmaps of selected commits of a commit store.
+ *  The bitmap of a commit is the set of store positions of the commit and
+ *  all its ancestors.  Entry P of an index file holds the offset of the
+ *  bitmap of the commit at position P in a data file, or NONE if it has
+ *  none, and the number of commits a walk from it visits before reaching
+ *  commits with bitmaps.  A commit gets a bitmap when that number reaches
+ *  INTERVAL, so the set of ancestors of any commit is found by walking at
+ *  most about INTERVAL commits of the commit graph and ORing in the stored
+ *  bitmaps where the walk stops.  Ancestry and ahead/behind counts then
+ *  take a bit test or a pass of word operations, however long the history.
+ *  @author Keshav Sharma
+ */
+class Reachability {
+
+    /** Size of one entry of the index file: bitmap offset and depth. */
+    static final int RECORD_SIZE = Long.BYTES + Integer.BYTES;
+
+    /** Walk length from a commit at which it is given a bitmap. */
+    static final int INTERVAL = 256;
+
+    /** Offset recorded for a commit without a bitmap. */
+    static final long NONE = -1;
+
+    /** Bitmaps kept in FILE, with their index in FILE.idx, for the commits
+     * of COMMITS, whose parents are found in GRAPH.
+     * @param file : File holding the bitmaps.
+     * @param commits : Commit store whose positions the bitmaps hold.
+     * @param graph : Commit graph of COMMITS.
+     * */
+    Reachability(File file, CommitStore commits, CommitGraph graph) {
+        _file = file;
+        _index = new File(file.getPath() + ".idx");
+        _commits = commits;
+        _graph = graph;
+    }
+
+    /** Appends index entries, and bitmaps where they are due, for every
+     * commit in the store that the index does not cover yet.  Entries are
+     * appended after the bitmaps they point to, so an interrupted update
+     * leaves at worst an unused bitmap behind. */
+    void update() {
+        long have = _index.length() / RECORD_SIZE;
+        if (have >= _commits.size()) {
+            return;
+        }
+        _graph.update();
+        try (RandomAccessFile data = new RandomAccessFile(_file, "rw");
+             RandomAccessFile index = new RandomAccessFile(_index, "rw")) {
+            index.setLength(have * RECORD_SIZE);
+            for (int pos = (int) have; pos < _commits.size(); pos += 1) {
+                int depth = 1;
+                for (int k = 0; k < 2; k += 1) {
+                    int parent = _graph.parent(pos, k);
+                    if (parent != CommitGraph.NONE
+                            && offset(parent) == NONE) {
+                        depth = Math.max(depth, 1 + depth(parent));
+                    }
+                }
+                long offset = NONE;
+                if (depth >= INTERVAL) {
+                    ByteArrayOutputStream bytes =
+                            new ByteArrayOutputStream();
+                    walk(pos).write(bytes);
+                    offset = data.length();
+                    data.seek(offset);
+                    data.write(bytes.toByteArray());
+                    depth = 0;
+                }
+                index.seek((long) pos * RECORD_SIZE);
+                index.writeLong(offset);
+                index.writeInt(depth);
+            }
+        } catch (IOException excp) {
+            throw Utils.error("Cannot update reachability bitmaps: %s",
+                    excp.getMessage());
+        }
+    }
+
+    /** Returns the set of positions of commit ID and its ancestors.
+     * @param id : Full SHA-1 of a stored commit.
+     * */
+    Bitmap reach(String id) {
+        update();
+        int pos = _commits.position(id);
+        long offset = offset(pos);
+        return offset == NONE ? walk(pos) : bitmap(offset);
+    }
+
+    /** Returns true iff commit A is commit B or one of its ancestors.
+     * @param a : Full SHA-1 of the first commit.
+     * @param b : Full SHA-1 of the second commit.
+     * */
+    boolean isAncestor(String a, String b) {
+        return reach(b).contains(_commits.position(a));
+    }
+
+    /** Returns the number of commits reachable from A but not from B, and
+     * the number reachable from B but not from A.
+     * @param a : Full SHA-1 of the first commit.
+     * @param b : Full SHA-1 of the second commit.
+     * */
+    int[] aheadBehind(String a, String b) {
+        Bitmap fromA = reach(a);
+        Bitmap fromB = reach(b);
+        return new int[] {
+            fromA.andNotCardinality(fromB), fromB.andNotCardinality(fromA)
+        };
+    }
+
+    /** Returns the set of positions of the commit at POS and its
+     * ancestors, walking parents from POS until commits with bitmaps are
+     * reached and ORing those in.  The bitmap of POS itself, if any, is
+     * not used, and a commit already in the set is not walked again.
+     * @param pos : Position of a commit the index covers.
+     * */
+    private Bitmap walk(int pos) {
+        Bitmap result = new Bitmap();
+        ArrayDeque<Integer> pending = new ArrayDeque<Integer>();
+        pending.push(pos);
+        while (!pending.isEmpty()) {
+            int p = pending.pop();
+            if (result.contains(p)) {
+                continue;
+            }
+            long offset = p == pos ? NONE : offset(p);
+            if (offset != NONE) {
+                result.or(bitmap(offset));
+                continue;
+            }
+            result.add(p);
+            for (int k = 0; k < 2; k += 1) {
+                int parent = _graph.parent(p, k);
+                if (parent != CommitGraph.NONE && !result.contains(parent)) {
+                    pending.push(parent);
+                }
+            }
+        }
+        return result;
+    }
+
+    /** Returns the offset of the bitmap of the commit at POS, or NONE.
+     * @param pos : Position of a commit the index covers.
+     * */
+    private long offset(int pos) {
+        return indexMap(pos).getLong(pos * RECORD_SIZE);
+    }
+
+    /** Returns the walk depth recorded for the commit at POS.
+     * @param pos : Position of a commit the index covers.
+     * */
+    private int depth(int pos) {
+        return indexMap(pos).getInt(pos * RECORD_SIZE + Long.BYTES);
+    }
+
+    /** Returns the bitmap stored at OFFSET of the data file.
+     * @param offset : Offset of the bitmap.
+     * */
+    private Bitmap bitmap(long offset) {
+        if (_map == null || offset >= _map.capacity()) {
+            _map = map(_file);
+        }
+        ByteBuffer in = _map.duplicate();
+        in.position((int) offset);
+        return Bitmap.read(in);
+    }
+
+    /** Returns the index mapped into memory, mapping it again if entry POS
+     * lies past the current mapping.
+     * @param pos : Position of a commit the index covers.
+     * */
+    private MappedByteBuffer indexMap(int pos) {
+        if (_indexMap == null
+                || (long) (pos + 1) * RECORD_SIZE > _indexMap.capacity()) {
+            _indexMap = map(_index);
+        }
+        return _indexMap;
+    }
+
+    /** Returns FILE mapped read-only into memory.
+     * @param file : File to map.
+     * */
+    private static MappedByteBuffer map(File file) {
+        try (FileChannel in = FileChannel.open(file.toPath())) {
+            return in.map(FileChannel.MapMode.READ_ONLY, 0, in.size());
+        } catch (IOException excp) {
+            throw Utils.error("Cannot read reachability bitmaps: %s",
+                    excp.getMessage());
+        }
+    }
+
+    /** File holding the bitmaps. */
+    private final File _file;
+
+    /** File holding the offset and depth of each commit. */
+    private final File _index;
+
+    /** Commit store the bitmaps describe. */
+    private final CommitStore _commits;
+
+    /** Commit graph of the store. */
+    private final CommitGraph _graph;
+
+    /** Memory-mapped bitmaps, or null if not yet mapped. */
+    private MappedByteBuffer _map;
+
+    /** Memory-mapped index, or null if not yet mapped. */
+    private MappedByteBuffer _indexMap;
+
+}
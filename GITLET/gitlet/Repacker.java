@@ -0,0 +1,182 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/** Repacker of the reachable objects of an object store into a new pack.
+ *  The trees and blobs of every commit, newest commit first, and the
+ *  staged blobs are gathered with the path at which each was first seen.
+ *  An object is stored as a Delta against the object seen just before it
+ *  at the same path, which is usually the next newer version of the same
+ *  file or directory, so the newest versions stay whole and are the
+ *  cheapest to read.  A delta is only kept if it is less than half the
+ *  size of its object, and no chain of deltas is longer than MAX_DEPTH.
+ *  Objects bigger than BIG_OBJECT bytes are left loose, so that no object
+ *  is ever read whole onto the heap to be packed or unpacked.  Once the
+ *  new packs are in place, the loose objects they hold and the old packs
+ *  are deleted, which also drops the packed objects that nothing reaches
+ *  any more.
+ *  @author Keshav Sharma
+ */
+class Repacker {
+
+    /** Longest chain of deltas from an object to a whole object. */
+    static final int MAX_DEPTH = 50;
+
+    /** Default size of an object beyond which it is left loose.  Packed
+     * objects, and the bases of their deltas, are read whole onto the
+     * heap, so only small ones are packed; larger files keep their loose
+     * objects, which are streamed and mapped in place. */
+    static final long BIG_OBJECT = 1L << 20;
+
+    /** Repacker of the objects of STORE reachable from COMMITS.
+     * @param store : Object store to repack.
+     * @param commits : Commit store whose commits are all reachable.
+     * */
+    Repacker(ObjectStore store, CommitStore commits) {
+        this(store, commits, BIG_OBJECT);
+    }
+
+    /** Repacker of the objects of STORE reachable from COMMITS, leaving
+     * loose those of more than BIGOBJECT bytes.
+     * @param store : Object store to repack.
+     * @param commits : Commit store whose commits are all reachable.
+     * @param bigObject : Size of an object beyond which it is left loose.
+     * */
+    Repacker(ObjectStore store, CommitStore commits, long bigObject) {
+        _store = store;
+        _commits = commits;
+        _bigObject = bigObject;
+    }
+
+    /** Packs every object reachable from a commit or from the staged files
+     * STAGED, and returns the number of objects packed, the number stored
+     * as deltas, and the number of packs written.
+     * @param staged : Map from staged file name to blob id.
+     * */
+    int[] repack(Map<String, String> staged) {
+        List<Pack> old = new ArrayList<Pack>(_store.packs());
+        for (Map.Entry<String, String> file : staged.entrySet()) {
+            add(file.getValue(), file.getKey());
+        }
+        for (int pos = _commits.size() - 1; pos >= 0; pos -= 1) {
+            Commit commit = _commits.get(_commits.idAt(pos));
+            if (commit.hasTree()) {
+                addTree(commit.tree(), "");
+            } else {
+                for (Map.Entry<String, String> file
+                         : commit.filesinCommit().entrySet()) {
+                    add(file.getValue(), file.getKey());
+                }
+            }
+        }
+        int[] result = new int[3];
+        HashMap<String, Integer> depths = new HashMap<String, Integer>();
+        ArrayList<String> packed = new ArrayList<String>();
+        List<File> written;
+        try {
+            Pack.Writer writer = new Pack.Writer(
+                    new File(_store.dir(), ObjectStore.PACK_DIR),
+                    _store.level());
+            for (Map.Entry<String, String> object : _objects.entrySet()) {
+                String id = object.getKey(), base = object.getValue();
+                if (_store.larger(id, _bigObject)) {
+                    _store.unpack(id);
+                    continue;
+                }
+                byte[] contents = _store.base(id);
+                byte[] data = contents;
+                int depth = depths.containsKey(base)
+                    ? depths.get(base) + 1 : 0;
+                if (depth > 0 && depth <= MAX_DEPTH) {
+                    byte[] delta = Delta.create(_store.base(base), contents);
+                    if (delta.length < contents.length / 2) {
+                        data = delta;
+                        result[1] += 1;
+                    } else {
+                        depth = 0;
+                    }
+                } else {
+                    depth = 0;
+                }
+                depths.put(id, depth);
+                writer.add(id, depth == 0 ? null : base, data);
+                packed.add(id);
+                result[0] += 1;
+            }
+            written = writer.finish();
+            result[2] = written.size();
+        } catch (IOException excp) {
+            throw Utils.error("Cannot write pack: %s", excp.getMessage());
+        }
+        for (String id : packed) {
+            _store.delete(id);
+        }
+        _store.rescan();
+        for (Pack pack : old) {
+            if (!written.contains(pack.index())) {
+                pack.index().delete();
+                pack.file().delete();
+            }
+        }
+        _store.rescan();
+        return result;
+    }
+
+    /** Adds tree ID, first seen at directory PATH, and everything beneath
+     * it that has not been added already.
+     * @param id : Id of the tree.
+     * @param path : Path of the directory, empty or ending in a slash.
+     * */
+    private void addTree(String id, String path) {
+        if (id.equals(Tree.EMPTY) || !add(id, path)) {
+            return;
+        }
+        HashMap<String, String> files = new HashMap<String, String>();
+        HashMap<String, String> subtrees = new HashMap<String, String>();
+        Tree.entries(_store, id, files, subtrees);
+        for (Map.Entry<String, String> file : files.entrySet()) {
+            add(file.getValue(), path + file.getKey());
+        }
+        for (Map.Entry<String, String> subtree : subtrees.entrySet()) {
+            addTree(subtree.getValue(), path + subtree.getKey() + "/");
+        }
+    }
+
+    /** Adds object ID, first seen at KEY, with the last object seen at KEY
+     * as its delta base.  Returns false if ID was already added.
+     * @param id : Full SHA-1 of the object.
+     * @param key : Path of a file, or of a directory as in addTree.
+     * */
+    private boolean add(String id, String key) {
+        if (_objects.containsKey(id)) {
+            return false;
+        }
+        _objects.put(id, _latest.put(key, id));
+        return true;
+    }
+
+    /** Object store being repacked. */
+    private final ObjectStore _store;
+
+    /** Commit store whose commits are the roots of the objects packed. */
+    private final CommitStore _commits;
+
+    /** Size of an object beyond which it is left loose. */
+    private final long _bigObject;
+
+    /** Objects to pack, in the order found, each mapped to its delta base
+     * or to null. */
+    private final LinkedHashMap<String, String> _objects =
+        new LinkedHashMap<String, String>();
+
+    /** Id of the last object seen at each path. */
+    private final HashMap<String, String> _latest =
+        new HashMap<String, String>();
+
+}
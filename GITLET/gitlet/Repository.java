@@ -0,0 +1,1086 @@
+package gitlet;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/** A Gitlet repository: the .gitlet directory of a working directory,
+ *  and the commands that act on the two.  Nothing is kept in static
+ *  fields, so any number of repositories may be used in one process, each
+ *  printing to its own stream, although one repository must not be used
+ *  by two threads at once.  A repository reads its branch pointers and
+ *  staging area on first use and then keeps them in memory; the commands
+ *  record what they change, and flush writes it all as one checkpoint.
+ *  Stored objects and commits are written as they are made.  Errors are
+ *  thrown as a GitletException, or one of its subclasses for the errors a
+ *  caller is likely to handle, whose message is the text the command line
+ *  prints; nothing here ever exits the process.  A repository that a
+ *  Daemon serves keeps its state in the daemon's memory, so it cannot be
+ *  opened while the daemon runs; its commands go to the daemon instead.
+ *  For example:
+ *  <pre>
+ *      try (Repository repo = Repository.open(dir, System.out)) {
+ *          repo.add("src");
+ *          String id = repo.commit("Update sources");
+ *      }
+ *  </pre>
+ *  @author Keshav Sharma
+ */
+public class Repository implements AutoCloseable {
+
+    /** Repository in working directory WORKDIR, which need not have been
+     * initialized, printing to OUT.
+     * @param workDir : Working directory.
+     * @param out : Stream for the output of commands.
+     * */
+    Repository(File workDir, PrintStream out) {
+        _workDir = workDir.getAbsoluteFile();
+        _out = out;
+        f = Utils.join(_workDir, ".gitlet");
+        s = Utils.join(f, ".staging");
+        c = Utils.join(f, ".commits");
+        _objects = new ObjectStore(Utils.join(f, "objects"));
+        _config = new Config(Utils.join(f, "config"));
+        _commits = new CommitStore(c, _objects);
+        _graph = new CommitGraph(Utils.join(c, "commit-graph"), _commits);
+        _reach = new Reachability(Utils.join(c, "bitmaps"), _commits,
+                                  _graph);
+        _headers = new CommitHeaders(Utils.join(c, "headers"), _commits);
+        _messages = new MessageIndex(Utils.join(c, "messages"), _commits);
+        pS = Utils.join(c, ".pointerSource.txt");
+        cP = Utils.join(c, ".currentPointer.txt");
+        _stat = new StatCache(Utils.join(f, "index"), _workDir);
+        fSHA1 = Utils.join(s, ".fileNametoSHA1.txt");
+        tR = Utils.join(s, ".toRemove.txt");
+        _state = new StateStore(f);
+    }
+
+    /** Returns the repository in working directory WORKDIR, which must
+     * have been initialized, printing to OUT.  Throws a GitletException
+     * if a Daemon is serving the repository, as the daemon would later
+     * overwrite whatever state this one wrote.
+     * @param workDir : Working directory.
+     * @param out : Stream for the output of commands.
+     * */
+    public static Repository open(File workDir, PrintStream out) {
+        Repository result = new Repository(workDir, out);
+        if (Daemon.serving(result.dir())) {
+            throw Utils.error("A daemon is serving this repository.");
+        }
+        result.loadState();
+        return result;
+    }
+
+    /** Creates and returns a new repository in working directory WORKDIR,
+     * printing to OUT.
+     * @param workDir : Working directory.
+     * @param out : Stream for the output of commands.
+     * */
+    public static Repository init(File workDir, PrintStream out)
+        throws IOException {
+        Repository result = new Repository(workDir, out);
+        result.init();
+        result.flush();
+        return result;
+    }
+
+    /** Writes every change to the branch pointers and staging area since
+     * the last flush, or hands them to the daemon if one is attached, and
+     * writes the stat cache if it changed. */
+    public void flush() {
+        _stat.save();
+        _state.flush(_daemon);
+    }
+
+    /** Flushes this repository. */
+    @Override
+    public void close() {
+        flush();
+    }
+
+    /** Sets the stream that command output is printed to.
+     * @param out : Stream for the output of commands.
+     * */
+    void output(PrintStream out) {
+        _out = out;
+    }
+
+    /** Runs the command described by ARGS against the repository state,
+     * reading that state first if it is not already in memory.  Errors are
+     * reported by throwing a GitletException whose message is the text to
+     * print.
+     * @param args : Command name followed by its operands.
+     * */
+    public void run(String... args) throws IOException {
+        try {
+            execute(args);
+        } finally {
+            flush();
+        }
+    }
+
+    /** Runs the command described by ARGS like run, but leaves what it
+     * changes in memory until the next flush.
+     * @param args : Command name followed by its operands.
+     * */
+    public void execute(String... args) throws IOException {
+        if (args.length < 1) {
+            throw Utils.error("Please enter a command.");
+        } else if (args[0].equals("init")) {
+            init();
+        } else if (args[0].equals("add")) {
+            incorrectOperands(args);
+            add(Arrays.copyOfRange(args, 1, args.length));
+        } else if (args[0].equals("commit")) {
+            incorrectOperands(args);
+            String cM = new String();
+            for (int i = 1; i < args.length - 1; i++) {
+                cM += args[i] + " ";
+            }
+            cM += args[args.length - 1];
+            commit(cM, null);
+        } else if (args[0].equals("rm")) {
+            incorrectOperands(args);
+            rm(args[1]);
+        } else if (args[0].equals("log")) {
+            log(pageOptions(args));
+        } else if (args[0].equals("global-log")) {
+            globalLog(pageOptions(args));
+        } else if (args[0].equals("find")) {
+            incorrectOperands(args);
+            String cM = new String();
+            for (int i = 1; i < args.length - 1; i++) {
+                cM += args[i] + " ";
+            }
+            cM += args[args.length - 1];
+            find(cM);
+        } else if (args[0].equals("status")) {
+            status();
+        } else if (args[0].equals("checkout")) {
+            if (args.length == 2) {
+                checkout(args[1]);
+            } else if (args[1].equals("--")) {
+                checkoutFile(args[2]);
+            } else if (args[2].equals("--")) {
+                checkoutCommitFile(args[1], args[3]);
+            } else {
+                throw Utils.error("Incorrect operands.");
+            }
+        } else if (args[0].equals("branch")) {
+            branch(args[1]);
+        } else if (args[0].equals("rm-branch")) {
+            removeBranch(args[1]);
+        } else if (args[0].equals("reset")) {
+            reset(args[1]);
+        } else if (args[0].equals("merge")) {
+            incorrectOperands(args);
+            merge(args[1]);
+        } else if (args[0].equals("diff")) {
+            diff(Arrays.copyOfRange(args, 1, args.length));
+        } else if (args[0].equals("gc")) {
+            gc();
+        } else if (args[0].equals("repack")) {
+            repack();
+        } else if (args[0].equals("ahead-behind")) {
+            incorrectOperands(args);
+            aheadBehind(args[1]);
+        } else {
+            throw Utils.error("No command with that name exists");
+        }
+    }
+
+    /**Marks if incorrect operands.
+     * @param args : Args to be tested.
+     * */
+    private void incorrectOperands(String[] args) {
+        if (args.length == 1) {
+            throw Utils.error("Incorrect operands.");
+        }
+    }
+
+    /** Reads the branch pointers and staging area into memory unless
+     * they are already there, first replaying any checkpoint that a
+     * daemon left half applied. */
+    @SuppressWarnings("unchecked")
+    private void loadState() {
+        if (_loaded) {
+            return;
+        }
+        if (!f.isDirectory()) {
+            throw new NoRepositoryException(
+                    "Not in an initialized Gitlet directory.");
+        }
+        new Checkpoint(f).recover();
+        _objects.create();
+        _objects.level(_config.getInt(Config.COMPRESSION_LEVEL,
+                                      Codec.DEFAULT_LEVEL));
+        _currentPointer = _state.read(cP, String.class);
+        _pointerSource = _state.read(pS, HashMap.class);
+        _fileNametoSHA1 = _state.read(fSHA1, HashMap.class);
+        _toRemove = _state.read(tR, ArrayList.class);
+        _loaded = true;
+    }
+
+    /** Records OBJ as the new contents of state file FILE.  The file is
+     * written when the command finishes, and only if OBJ differs from what
+     * the file holds; if a daemon is serving commands, the daemon writes it
+     * at its next checkpoint.
+     * @param file : State file to update.
+     * @param obj : Its new contents.
+     * */
+    private void save(File file, Serializable obj) {
+        _state.save(file, obj);
+    }
+
+    /** Makes DAEMON responsible for writing state, and keeps state in
+     * memory between commands.
+     * @param daemon : Daemon serving commands in this process.
+     * */
+    void attach(Daemon daemon) {
+        _daemon = daemon;
+        _loaded = false;
+    }
+
+    /** Forgets the in-memory state, so that the next command reads it
+     * again from disk. */
+    void discardState() {
+        _loaded = false;
+        _state.discard();
+    }
+
+    /** Initializes Gitlet version-control system. */
+    private void init() throws IOException {
+        if (f.exists()) {
+            throw Utils.error("A Gitlet version-control system "
+                    + "already exists in the current directory.");
+        }
+        f.mkdir();
+        s.mkdir();
+        c.mkdir();
+        _currentPointer = "master";
+        Commit initial = new Commit("initial commit", null, null, null,
+                _objects);
+        _pointerSource.put("master", initial.sHA1());
+        _commits.create();
+        _commits.put(initial);
+        _graph.update();
+        _reach.update();
+        _headers.update();
+        _messages.update();
+        _objects.create();
+        save(pS, _pointerSource);
+        save(cP, _currentPointer);
+        save(fSHA1, _fileNametoSHA1);
+        save(tR, _toRemove);
+        _loaded = true;
+    }
+
+    /** Add files to staging area.  A directory stands for every plain
+     * file beneath it.  The files are hashed and stored in parallel, and
+     * the staging area is written once for all of them.
+     * @param names : Names of files and directories to be staged.
+     * */
+    public void add(String... names) {
+        ArrayList<String> paths = new ArrayList<String>();
+        for (String name : names) {
+            File toAdd = Utils.join(_workDir, name);
+            if (!toAdd.exists()) {
+                throw new MissingFileException("File does not exist.");
+            }
+            paths.addAll(workingFiles(toAdd));
+        }
+        loadState();
+        HashMap<String, String> hashes =
+                _stat.hashAll(paths, new Hasher(_objects));
+        Commit curr = _commits.get(_pointerSource.get(_currentPointer));
+        HashMap<String, String> commitFiles = curr.filesinCommit();
+        for (String fileName : paths) {
+            String filesha1 = hashes.get(fileName);
+            if (_toRemove.contains(fileName)) {
+                _toRemove.remove(fileName);
+            } else if (filesha1.equals(commitFiles.get(fileName))) {
+                _fileNametoSHA1.remove(fileName);
+            } else {
+                _fileNametoSHA1.put(fileName, filesha1);
+            }
+        }
+        save(fSHA1, _fileNametoSHA1);
+        save(tR, _toRemove);
+    }
+
+    /** Returns the names, relative to the working directory, of FILE if
+     * it is a plain file, or of every plain file beneath it that is not
+     * ignored if it is a directory other than .gitlet.
+     * @param file : File or directory in the working directory.
+     * */
+    private List<String> workingFiles(File file) {
+        return new FileScanner(_workDir, IgnoreMatcher.read(_workDir))
+            .files(file);
+    }
+
+    /** Copies object ID straight from the object store to working file
+     * NAME, creating its directory if needed, and records the result in
+     * the stat cache.
+     * @param name : Name of the file relative to the working directory.
+     * @param id : SHA1 of its contents.
+     * */
+    private void writeWorkingFile(String name, String id) {
+        File file = Utils.join(_workDir, name);
+        if (file.isDirectory()) {
+            throw Utils.error("Cannot overwrite directory %s.", name);
+        }
+        file.getParentFile().mkdirs();
+        _objects.copyTo(id, file);
+        _stat.update(name, id);
+    }
+
+    /** Deletes working file NAME if it exists.
+     * @param name : Name of the file relative to the working directory.
+     * */
+    private void deleteWorkingFile(String name) {
+        Utils.join(_workDir, name).delete();
+    }
+
+    /** Creates commit with given message, which is a merge commit if
+     * MERGED is not null.
+     * @param cM : commit message.
+     * @param merged : Head commit of the branch merged in, or null.
+     * */
+    private void commit(String cM, Commit merged) {
+        if (cM.isEmpty()) {
+            throw Utils.error("Please enter a commit message.");
+        }
+        loadState();
+        if (_fileNametoSHA1.isEmpty() && _toRemove.isEmpty()) {
+            throw Utils.error("No changes added to the commit.");
+        }
+        Commit parent = _commits.get(_pointerSource.get(_currentPointer));
+        Commit toCreate = merged == null
+            ? new Commit(cM, parent, _fileNametoSHA1, _toRemove, _objects)
+            : new Commit(cM, parent, merged, _fileNametoSHA1, _toRemove,
+                         _objects);
+        _commits.put(toCreate);
+        _graph.update();
+        _reach.update();
+        _headers.update();
+        _messages.update();
+        _pointerSource.put(_currentPointer, toCreate.sHA1());
+        _fileNametoSHA1 = new HashMap<String, String>();
+        _toRemove = new ArrayList<String>();
+        save(fSHA1, _fileNametoSHA1);
+        save(tR, _toRemove);
+        save(pS, _pointerSource);
+    }
+
+    /** Commits the staging area with message MESSAGE, and returns the id
+     * of the new commit.
+     * @param message : Commit message.
+     * */
+    public String commit(String message) {
+        commit(message, null);
+        return head();
+    }
+
+    /** Returns the id of the head commit of the current branch. */
+    public String head() {
+        loadState();
+        return _pointerSource.get(_currentPointer);
+    }
+
+    /** Returns the name of the current branch. */
+    public String currentBranch() {
+        loadState();
+        return _currentPointer;
+    }
+
+    /** Returns the history of the current branch, from its head back to
+     * the initial commit along first parents, as the log command prints
+     * it.  Commits are read as the iterator reaches them.
+     * */
+    public Iterator<Commit> log() {
+        final int head = _commits.position(head());
+        return new Iterator<Commit>() {
+            @Override
+            public boolean hasNext() {
+                return _pos != CommitGraph.NONE;
+            }
+
+            @Override
+            public Commit next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                Commit result = _commits.get(_commits.idAt(_pos));
+                _pos = _graph.parent(_pos, 0);
+                return result;
+            }
+
+            /** Position of the next commit, or CommitGraph.NONE. */
+            private int _pos = head;
+        };
+    }
+
+    /** Removes a file from staging area and
+     * marked for removal if in latest commit.
+     * @param fileName : Name of file marked for removal and to be unstaged.
+     * */
+    public void rm(String fileName) {
+        loadState();
+        boolean notHasFiles =
+                _commits.get(_pointerSource.get(
+                        _currentPointer)).filesinCommit().isEmpty();
+        HashMap<String, String> filesTrackedInCommit =
+                _commits.get(_pointerSource.get(
+                        _currentPointer)).filesinCommit();
+        if (notHasFiles) {
+            if (!_fileNametoSHA1.containsKey(fileName)) {
+                throw Utils.error("No reason to remove the file.");
+            }
+        } else {
+            if ((!filesTrackedInCommit.containsKey(fileName))
+                    && (!_fileNametoSHA1.containsKey(fileName))) {
+                throw Utils.error("No reason to remove the file.");
+            }
+            if (_commits.get(_pointerSource.get(
+                    _currentPointer)).filesinCommit().containsKey(fileName)) {
+                deleteWorkingFile(fileName);
+                _toRemove.add(fileName);
+            }
+        }
+        if (_fileNametoSHA1.containsKey(fileName)) {
+            _fileNametoSHA1.remove(fileName);
+        }
+        save(fSHA1, _fileNametoSHA1);
+        save(tR, _toRemove);
+    }
+
+
+    /** Prints history of commits of given branch.
+     * @param page : Number of commits to skip and most to print.
+     * */
+    private void log(int[] page) {
+        loadState();
+        _headers.update();
+        int pos = _commits.position(_pointerSource.get(_currentPointer));
+        for (int k = 0; k < page[0] && pos != CommitGraph.NONE; k += 1) {
+            pos = _graph.parent(pos, 0);
+        }
+        for (int k = 0; k < page[1] && pos != CommitGraph.NONE; k += 1) {
+            _out.print(_headers.logEntry(pos));
+            pos = _graph.parent(pos, 0);
+        }
+    }
+
+    /** Prints entire history of commits, in the order they were made.
+     * @param page : Number of commits to skip and most to print.
+     * */
+    private void globalLog(int[] page) {
+        if (!f.exists()) {
+            throw new NoRepositoryException(
+                    "Not in an initialized Gitlet directory.");
+        }
+        _headers.update();
+        int end = (int) Math.min(_commits.size(), (long) page[0] + page[1]);
+        for (int pos = page[0]; pos < end; pos += 1) {
+            _out.print(_headers.logEntry(pos));
+        }
+    }
+
+    /** Returns the number of commits to skip and the most to print, as
+     * given by the options --skip K and -n N among ARGS after the command
+     * name.  By default nothing is skipped and there is no limit.
+     * @param args : Command name followed by its operands.
+     * */
+    private int[] pageOptions(String[] args) {
+        int[] page = {0, Integer.MAX_VALUE};
+        for (int i = 1; i < args.length; i += 2) {
+            int k = args[i].equals("--skip") ? 0
+                : args[i].equals("-n") ? 1 : -1;
+            if (k < 0 || i + 1 == args.length) {
+                throw Utils.error("Incorrect operands.");
+            }
+            try {
+                page[k] = Integer.parseInt(args[i + 1]);
+            } catch (NumberFormatException excp) {
+                throw Utils.error("Incorrect operands.");
+            }
+            if (page[k] < 0) {
+                throw Utils.error("Incorrect operands.");
+            }
+        }
+        return page;
+    }
+
+    /** Find the commit id of commit with the give commit message.
+     * @param cM : Commit message to look for.
+     */
+    private void find(String cM) {
+        if (!f.exists()) {
+            throw new NoRepositoryException(
+                    "Not in an initialized Gitlet directory.");
+        }
+        List<String> found = _messages.find(cM);
+        if (found.isEmpty()) {
+            throw new NoSuchCommitException(
+                    "Found no commit with that message.");
+        }
+        for (String currSHA1 : found) {
+            _out.println(currSHA1);
+        }
+    }
+
+    /** Prints out status message. */
+    private void status() {
+        loadState();
+        _out.println("=== Branches ===");
+        ArrayList<String> branches = new ArrayList<String>();
+        branches.addAll(_pointerSource.keySet());
+        Collections.sort(branches);
+        for (String sol : branches) {
+            if (sol.equals(_currentPointer)) {
+                _out.println("*" + _currentPointer);
+            } else {
+                _out.println(sol);
+            }
+        }
+        _out.println();
+        _out.println("=== Staged Files ===");
+        ArrayList<String> stagedFiles = new ArrayList<String>();
+        stagedFiles.addAll(_fileNametoSHA1.keySet());
+        Collections.sort(stagedFiles);
+        for (String see: stagedFiles) {
+            _out.println(see);
+        }
+        _out.println();
+        _out.println("=== Removed Files ===");
+        ArrayList<String> removedFiles = new ArrayList<String>();
+        removedFiles.addAll(_toRemove);
+        Collections.sort(removedFiles);
+        for (String say : removedFiles) {
+            _out.println(say);
+        }
+        _out.println();
+        Commit curr = _commits.get(_pointerSource.get(_currentPointer));
+        HashMap<String, String> tracked = curr.filesinCommit();
+        TreeSet<String> paths = new TreeSet<String>(tracked.keySet());
+        paths.addAll(_fileNametoSHA1.keySet());
+        _out.println("=== Modifications Not Staged For Commit ===");
+        HashMap<String, String> hashes =
+                _stat.hashAll(paths, new Hasher(null));
+        for (String path : paths) {
+            String expected = _fileNametoSHA1.get(path);
+            if (expected == null && _toRemove.contains(path)) {
+                continue;
+            } else if (expected == null) {
+                expected = tracked.get(path);
+            }
+            String actual = hashes.get(path);
+            if (actual == null) {
+                _out.println(path + " (deleted)");
+            } else if (!actual.equals(expected)) {
+                _out.println(path + " (modified)");
+            }
+        }
+        _stat.retainAll(paths);
+        _out.println();
+        _out.println("=== Untracked Files ===");
+        for (String name : workingFiles(_workDir)) {
+            if (!_fileNametoSHA1.containsKey(name)
+                    && (!tracked.containsKey(name)
+                        || _toRemove.contains(name))) {
+                _out.println(name);
+            }
+        }
+        _out.println();
+    }
+
+    /** Checks out file from current head.
+     * @param fileName : Name of file being checked out.
+     * */
+    public void checkoutFile(String fileName) {
+        loadState();
+        Commit head = _commits.get(_pointerSource.get(_currentPointer));
+        String blob = head.blob(fileName);
+        if (blob == null) {
+            throw new MissingFileException(
+                    "File does not exist in that commit.");
+        }
+        writeWorkingFile(fileName, blob);
+    }
+
+    /** Checks out file from given commit.
+     * @param cID : Commit SHA1 to check out to.
+     * @param fileName : File to check out.
+     * */
+    public void checkoutCommitFile(String cID, String fileName) {
+        loadState();
+        String blob = findCommit(cID).blob(fileName);
+        if (blob == null) {
+            throw new MissingFileException(
+                    "File does not exist in that commit.");
+        }
+        writeWorkingFile(fileName, blob);
+    }
+
+    /** Returns the commit whose id is CID or, failing that, the only
+     * commit whose id starts with CID.
+     * @param cID : Full or abbreviated commit SHA1.
+     * */
+    private Commit findCommit(String cID) {
+        String id = _commits.resolve(cID);
+        if (id == null) {
+            throw new NoSuchCommitException("No commit with that id exists.");
+        }
+        return _commits.get(id);
+    }
+
+    /** Resets to the commit refered to be cID,
+     * and checks out all files from this commit.
+     * @param cID : Commit SHA1 to reset to.
+     * */
+    public void reset(String cID) {
+        loadState();
+        Commit source = findCommit(cID);
+        Commit current = _commits.get(_pointerSource.get(_currentPointer));
+        checkout(current, source);
+        _pointerSource.put(_currentPointer, source.sHA1());
+        _fileNametoSHA1 = new HashMap<String, String>();
+        save(pS, _pointerSource);
+        save(fSHA1, _fileNametoSHA1);
+    }
+
+
+    /** Turns the working files of commit FROM into those of commit TO,
+     * writing and deleting only the files that differ.
+     * @param from : Commit whose files are in the working directory.
+     * @param to : Commit to check out.
+     * */
+    private void checkout(Commit from, Commit to) {
+        new Checkout(_objects, _stat,
+                     _workDir).run(from, to);
+    }
+
+    /** Checks out commit that is head of given branch.
+     * @param branchName : checkout to branchName.
+     * */
+    public void checkout(String branchName) {
+        loadState();
+        if (!_pointerSource.containsKey(branchName)) {
+            throw new NoSuchBranchException("No such branch exists.");
+        }
+        if (_currentPointer.equals(branchName)) {
+            throw Utils.error("No need to checkout the current branch.");
+        }
+        Commit refer = _commits.get(_pointerSource.get(branchName));
+        Commit curr = _commits.get(_pointerSource.get(_currentPointer));
+        checkout(curr, refer);
+        _toRemove = new ArrayList<String>();
+        _currentPointer = branchName;
+        _fileNametoSHA1 = new HashMap<String, String>();
+        save(cP, _currentPointer);
+        save(fSHA1, _fileNametoSHA1);
+        save(tR, _toRemove);
+    }
+
+    /** Creates new pointer.
+     * @param branchName : Name of a branch to create.
+     * */
+    public void branch(String branchName) {
+        loadState();
+        if (_pointerSource.containsKey(branchName)) {
+            throw Utils.error("A branch with that name already exists.");
+        }
+        Commit curr = _commits.get(_pointerSource.get(_currentPointer));
+        _pointerSource.put(branchName, _pointerSource.get(_currentPointer));
+        save(pS, _pointerSource);
+    }
+
+    /** Removes the branch reference.
+     * @param branchName : Branch name to be removed.
+     * */
+    public void removeBranch(String branchName) {
+        loadState();
+        if (_currentPointer.equals(branchName)) {
+            throw Utils.error("Cannot remove the current branch.");
+        } else if (!_pointerSource.containsKey(branchName)) {
+            throw new NoSuchBranchException(
+                    "A branch with that name does not exist.");
+        } else {
+            _pointerSource.remove(branchName);
+        }
+        save(pS, _pointerSource);
+    }
+
+    /** Writes the differences between two snapshots in unified format.
+     * With no operands, compares the staging area to the working files;
+     * with --staged, the head commit to the staging area; with one commit
+     * id, that commit to the working files; and with two, the first commit
+     * to the second.  Only files whose blob SHA1s differ are read, and
+     * they are read through memory mappings.
+     * @param operands : Operands of the diff command.
+     * */
+    private void diff(String... operands) throws IOException {
+        loadState();
+        Commit head = _commits.get(_pointerSource.get(_currentPointer));
+        OutputStream out = new BufferedOutputStream(_out,
+                Utils.BUFFER_SIZE);
+        UnifiedDiff writer = new UnifiedDiff(out);
+        if (operands.length == 2) {
+            TreeMap<String, String[]> changes =
+                    new TreeMap<String, String[]>();
+            Tree.diff(_objects, findCommit(operands[0]).tree(),
+                      findCommit(operands[1]).tree(), changes);
+            for (Map.Entry<String, String[]> e : changes.entrySet()) {
+                writer.write(e.getKey(), blobContents(e.getValue()[0]),
+                             blobContents(e.getValue()[1]));
+            }
+        } else if (operands.length == 1 && operands[0].equals("--staged")) {
+            diffFiles(writer, head.filesinCommit(), stagedFiles(head),
+                      false);
+        } else if (operands.length <= 1) {
+            HashMap<String, String> from = operands.length == 0
+                ? stagedFiles(head) : findCommit(operands[0]).filesinCommit();
+            TreeSet<String> paths = new TreeSet<String>(from.keySet());
+            paths.addAll(stagedFiles(head).keySet());
+            diffFiles(writer, from,
+                      _stat.hashAll(paths, new Hasher(null)), true);
+        } else {
+            throw Utils.error("Incorrect operands.");
+        }
+        out.flush();
+    }
+
+    /** Writes to WRITER the differences of every file whose blob differs
+     * between FROM and TO.
+     * @param writer : Writer of the differences.
+     * @param from : Map from path to blob SHA1 of the old snapshot.
+     * @param to : Map from path to blob SHA1, or null for a missing file,
+     *             of the new snapshot.
+     * @param working : True iff TO describes the working files, which
+     *                  are then read in place of its blobs, and must be
+     *                  no larger than UnifiedDiff.MAX_SIZE.
+     * */
+    private void diffFiles(UnifiedDiff writer,
+                                  Map<String, String> from,
+                                  Map<String, String> to, boolean working)
+        throws IOException {
+        TreeSet<String> paths = new TreeSet<String>(from.keySet());
+        paths.addAll(to.keySet());
+        for (String path : paths) {
+            String before = from.get(path);
+            String after = to.get(path);
+            if (Objects.equals(before, after)) {
+                continue;
+            }
+            ByteBuffer contents;
+            if (after == null || !working) {
+                contents = blobContents(after);
+            } else {
+                File file = Utils.join(_workDir, path);
+                if (file.length() > UnifiedDiff.MAX_SIZE) {
+                    throw Utils.error("File %s is too large to diff.", path);
+                }
+                contents = Utils.mapContents(file);
+            }
+            writer.write(path, blobContents(before), contents);
+        }
+    }
+
+    /** Returns the files of HEAD as changed by the staging area.
+     * @param head : Head commit of the current branch.
+     * @return Map from path to blob SHA1.
+     * */
+    private HashMap<String, String> stagedFiles(Commit head) {
+        HashMap<String, String> files =
+                new HashMap<String, String>(head.filesinCommit());
+        files.putAll(_fileNametoSHA1);
+        files.keySet().removeAll(_toRemove);
+        return files;
+    }
+
+    /** Returns the contents of blob ID mapped into memory, or null if ID
+     * is null.
+     * @param id : SHA1 of a blob, or null.
+     * */
+    private ByteBuffer blobContents(String id) {
+        return id == null ? null : _objects.map(id);
+    }
+
+    /** Deletes the stored files and trees that no commit and no staged
+     * file refers to, such as versions of files that were staged and then
+     * replaced or unstaged without being committed.  Every commit stays,
+     * since global-log, find, checkout and reset can reach any commit ever
+     * made by its id.
+     * */
+    private void gc() {
+        loadState();
+        long[] freed = new GarbageCollector(_objects, _commits)
+            .collect(_fileNametoSHA1.values());
+        _out.println("Removed " + freed[0] + " unreachable objects ("
+                + freed[1] + " bytes).");
+    }
+
+    /** Moves every stored file and tree that a commit or a staged file
+     * refers to into a pack, storing versions of a file as deltas against
+     * one another, and deletes the rest of the old packs.
+     * */
+    private void repack() {
+        loadState();
+        int[] packed = new Repacker(_objects, _commits)
+            .repack(_fileNametoSHA1);
+        _out.println("Packed " + packed[0] + " objects (" + packed[1]
+                + " deltas) into " + packed[2] + " pack(s).");
+    }
+
+    /** Prints how many commits the current branch has that branch
+     * BRANCHNAME lacks, and how many it lacks that BRANCHNAME has.
+     * @param branchName : Name of the branch to compare with.
+     * */
+    private void aheadBehind(String branchName) {
+        loadState();
+        if (!_pointerSource.containsKey(branchName)) {
+            throw new NoSuchBranchException(
+                    "A branch with that name does not exist.");
+        }
+        int[] counts = _reach.aheadBehind(
+                _pointerSource.get(_currentPointer),
+                _pointerSource.get(branchName));
+        _out.println(counts[0] + " ahead, " + counts[1] + " behind");
+    }
+
+    /** Merges the head of branch BRANCHNAME into the current branch.
+     * Files changed only on the given branch since the split point take
+     * the given version, files changed on both branches are merged line by
+     * line, and the result is committed with both heads as parents.
+     * @param branchName : Branch name to be merged with current branch.
+     */
+    public void merge(String branchName) {
+        loadState();
+        Commit curr = _commits.get(_pointerSource.get(_currentPointer));
+        if ((!_fileNametoSHA1.isEmpty()) || (!_toRemove.isEmpty())) {
+            throw new UncommittedChangesException(
+                    "You have uncommitted changes.");
+        } else if (!_pointerSource.containsKey(branchName)) {
+            throw new NoSuchBranchException(
+                    "A branch with that name does not exist.");
+        } else if (_currentPointer.equals(branchName)) {
+            throw Utils.error("Cannot merge a branch with itself.");
+        }
+        Commit input = _commits.get(_pointerSource.get(branchName));
+        if (_reach.isAncestor(input.sHA1(), curr.sHA1())) {
+            _out.println("Given branch is an ancestor of the "
+                    + "current branch.");
+            return;
+        } else if (_reach.isAncestor(curr.sHA1(), input.sHA1())) {
+            reset(input.sHA1());
+            _out.println("Current branch fast-forwarded.");
+            return;
+        }
+        Commit split = findSplitPoint(input, curr);
+        TreeMap<String, String[]> given = new TreeMap<String, String[]>();
+        Tree.diff(_objects, split.tree(), input.tree(), given);
+        HashMap<String, String[]> current = new HashMap<String, String[]>();
+        Tree.diff(_objects, split.tree(), curr.tree(), current);
+        for (Map.Entry<String, String[]> e : given.entrySet()) {
+            String[] ours = current.get(e.getKey());
+            String theirs = e.getValue()[1];
+            if (ours != null && Objects.equals(ours[1], theirs)) {
+                continue;
+            }
+            File file = Utils.join(_workDir,
+                    e.getKey());
+            if (file.exists() && curr.blob(e.getKey()) == null) {
+                throw new UntrackedFileException("There is an untracked "
+                        + "file in the way; delete it or add it first.");
+            }
+        }
+        boolean conflicts = false;
+        for (Map.Entry<String, String[]> e : given.entrySet()) {
+            String name = e.getKey();
+            String base = e.getValue()[0];
+            String theirs = e.getValue()[1];
+            String[] changed = current.get(name);
+            if (changed == null && theirs == null) {
+                deleteWorkingFile(name);
+                _toRemove.add(name);
+            } else if (changed == null) {
+                writeWorkingFile(name, theirs);
+                _fileNametoSHA1.put(name, theirs);
+            } else if (!Objects.equals(changed[1], theirs)) {
+                conflicts |= mergeWorkingFile(name, base, changed[1],
+                                              theirs);
+            }
+        }
+        if (conflicts) {
+            _out.println("Encountered a merge conflict.");
+        }
+        commit("Merged " + branchName + " into " + _currentPointer + ".",
+               input);
+    }
+
+    /** Writes to working file NAME the line-by-line merge of the changes
+     * from blob BASE to blobs OURS and THEIRS, any of which is null for a
+     * missing file, and stages the result.  Returns true iff the merge has
+     * conflicts.
+     * @param name : Name of the file relative to the working directory.
+     * @param base : Blob of the file at the split point, or null.
+     * @param ours : Blob of the file in the current branch, or null.
+     * @param theirs : Blob of the file in the given branch, or null.
+     * */
+    private boolean mergeWorkingFile(String name, String base,
+                                     String ours, String theirs) {
+        ThreeWayMerge merge = new ThreeWayMerge(blobLines(base),
+                blobLines(ours), blobLines(theirs));
+        File file = Utils.join(_workDir, name);
+        file.getParentFile().mkdirs();
+        boolean conflicts;
+        try (OutputStream out =
+                new BufferedOutputStream(new FileOutputStream(file))) {
+            conflicts = merge.write(out);
+        } catch (IOException excp) {
+            throw Utils.error("Cannot write %s: %s", name,
+                    excp.getMessage());
+        }
+        String id = _objects.put(file);
+        _stat.update(name, id);
+        _fileNametoSHA1.put(name, id);
+        return conflicts;
+    }
+
+    /** Returns the lines of blob ID, or no lines if ID is null.
+     * @param id : SHA1 of a blob, or null.
+     * */
+    private Lines blobLines(String id) {
+        return new Lines(id == null ? new byte[0] : _objects.get(id));
+    }
+
+    /** Finds split point for merge function, a latest common ancestor
+     * of INPUT and CURR, using the commit graph.
+     * @param input : Head commit of the given branch.
+     * @param curr : Head commit of the current branch.
+     * @return The split point of the two branches.
+     * */
+    private Commit findSplitPoint(Commit input, Commit curr) {
+        return _commits.get(_graph.mergeBase(input.sHA1(), curr.sHA1()));
+    }
+
+    /** Returns the .gitlet directory. */
+    File dir() {
+        return f;
+    }
+
+    /** Store of file contents.
+     * @return The loose object store.
+     * */
+    ObjectStore objects() {
+        return _objects;
+    }
+
+    /** Commit store.
+     * @return The append-only commit store.*/
+    CommitStore commits() {
+        return _commits;
+    }
+
+    /** Returns staging area.
+     * @return HashMap of Files to be added.
+     */
+    File fSHA1() {
+        return fSHA1;
+    }
+
+    /**Files to Remove.
+     * @return _toRemove HashMap.*/
+    File tR() {
+        return tR;
+    }
+
+    /**Returns pointer Source. */
+    File pS() {
+        return pS;
+    }
+
+    /** Returns current Pointer. */
+    File cP() {
+        return cP;
+    }
+
+    /** Working directory. */
+    private final File _workDir;
+    /** Stream that command output is printed to. */
+    private PrintStream _out;
+    /** Main .gitlet directory. */
+    private final File f;
+    /** Staging folder. */
+    private final File s;
+    /** Commits folder. */
+    private final File c;
+    /** Object store, or the contents of every file and tree keyed by
+     * SHA1. */
+    private final ObjectStore _objects;
+    /** Repository settings. */
+    private final Config _config;
+    /** Commit store, or the append-only log of every commit. */
+    private final CommitStore _commits;
+    /** Commit graph, or the parent positions and generation numbers
+     * of every commit in _commits. */
+    private final CommitGraph _graph;
+    /** Reachability bitmaps, or the ancestors of selected commits in
+     * _commits. */
+    private final Reachability _reach;
+    /** Commit headers, or the id, parents, time and message of every
+     * commit in _commits. */
+    private final CommitHeaders _headers;
+    /** Message index, or the commits in _commits keyed by message. */
+    private final MessageIndex _messages;
+    /** Pointer source, or the file with
+     * the hashmap of pointer name to commit SHA1.*/
+    private final File pS;
+    /** Current Pointer, or the file with
+     * the String with the name of the current pointer. */
+    private final File cP;
+    /** Stat cache, or the stat data and SHA1 of tracked working files. */
+    private final StatCache _stat;
+    /** File to SHA1 HashMap, updated with new versions
+     * of files with same file name to staging area. */
+    private final File fSHA1;
+    /** Files to remove, or ArrayList of File
+     * names of files to remove next commit. */
+    private final File tR;
+    /** State store, or the branch pointers and staging area as read
+     * from and written to disk. */
+    private final StateStore _state;
+    /** True iff the branch pointers and staging area are in memory. */
+    private boolean _loaded;
+    /** Daemon serving commands in this process, or null. */
+    private Daemon _daemon;
+    /** Name of current pointer. */
+    private String _currentPointer;
+    /** Pointer Source, or hashmap of pointer names to commit sha1's. */
+    private HashMap<String, String>
+            _pointerSource = new HashMap<String, String>();
+    /** ArrayList of file names to be staged for removal. */
+    private ArrayList<String> _toRemove = new ArrayList<String>();
+    /** Hashmap of file name to file sha1, which always
+     * contains the latest version of that file.
+     */
+    private HashMap<String, String>
+            _fileNametoSHA1 = new HashMap<String, String>();
+
+}
@@ -0,0 +1,380 @@
+package gitlet;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/** Runner of integration-test scripts, such as basic-log.in, each of
+ *  which describes a gitlet session and what it should print.  Rather than
+ *  start a gitlet process per command, a script runs its commands against
+ *  Repository objects in this process, in a temporary directory of its
+ *  own, and the scripts run concurrently on as many threads as there are
+ *  processors.  A script is made of these lines:
+ *  <pre>
+ *      # TEXT          A comment.
+ *      I FILE          The lines of FILE, named relative to the script.
+ *      C DIR           Runs later commands in subdirectory DIR.
+ *      T SECONDS       A time limit, which is ignored.
+ *      + NAME F        Copies source file F to NAME.
+ *      - NAME          Deletes NAME.
+ *      = NAME F        NAME must have the contents of source file F.
+ *      * NAME          NAME must not exist.
+ *      E NAME          NAME must exist.
+ *      D VAR "REGEX"   Defines ${VAR} as a pattern for expected output.
+ *      > COMMAND       Runs COMMAND.  The lines after it, up to one holding
+ *                      <<<, are its expected output, or up to one holding
+ *                      <<<*, a pattern for it.
+ *  </pre>
+ *  In a pattern, ${VAR} stands for the pattern VAR defines.  After a
+ *  match, ${1}, ${2} ... stand for the text matched by each variable in
+ *  turn, in later commands and patterns.  Output is compared ignoring
+ *  trailing blanks.
+ *  @author Keshav Sharma
+ */
+public class ScriptTester {
+
+    /** Usage: java gitlet.ScriptTester [--src DIR] SCRIPT ..., where DIR,
+     *  src by default, holds the source files that scripts copy.  Prints
+     *  whether each script passed, and how long it took, and exits with
+     *  status 1 if any failed. */
+    public static void main(String... args) throws InterruptedException {
+        File src = new File("src");
+        ArrayList<File> scripts = new ArrayList<File>();
+        for (int i = 0; i < args.length; i += 1) {
+            if (args[i].equals("--src") && i + 1 < args.length) {
+                i += 1;
+                src = new File(args[i]);
+            } else {
+                scripts.add(new File(args[i]));
+            }
+        }
+        System.exit(new ScriptTester(src).runAll(scripts, System.out));
+    }
+
+    /** Runner of scripts that copy their source files from SRC.
+     * @param src : Directory of the source files.
+     * */
+    ScriptTester(File src) {
+        _src = src;
+    }
+
+    /** Runs every one of SCRIPTS, reporting each to OUT in order, and
+     * returns the number that failed.
+     * @param scripts : Script files.
+     * @param out : Stream for the report.
+     * */
+    int runAll(List<File> scripts, PrintStream out)
+        throws InterruptedException {
+        long start = System.nanoTime();
+        ExecutorService pool = Executors.newFixedThreadPool(
+                Runtime.getRuntime().availableProcessors());
+        ArrayList<Future<String>> results = new ArrayList<Future<String>>();
+        for (File script : scripts) {
+            results.add(pool.submit(() -> run(script)));
+        }
+        int failed = 0;
+        try {
+            for (int i = 0; i < scripts.size(); i += 1) {
+                String failure;
+                try {
+                    failure = results.get(i).get();
+                } catch (ExecutionException excp) {
+                    failure = excp.getCause().toString();
+                }
+                out.printf("%s %s (%d ms)%n", failure == null ? "PASS"
+                           : "FAIL", scripts.get(i).getName(),
+                           _millis.get(scripts.get(i)));
+                if (failure != null) {
+                    failed += 1;
+                    out.println("    " + failure);
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        out.printf("Ran %d scripts, %d failed, in %d ms.%n", scripts.size(),
+                   failed, (System.nanoTime() - start) / 1000000);
+        return failed == 0 ? 0 : 1;
+    }
+
+    /** Runs SCRIPT in a new temporary directory, and returns why it
+     * failed, or null if it passed.
+     * @param script : Script file.
+     * */
+    String run(File script) throws IOException {
+        long start = System.nanoTime();
+        Path dir = Files.createTempDirectory("gitlet-test");
+        try {
+            new Session(dir.toFile()).run(script);
+            return null;
+        } catch (GitletException excp) {
+            return excp.getMessage();
+        } finally {
+            delete(dir);
+            _millis.put(script, (System.nanoTime() - start) / 1000000);
+        }
+    }
+
+    /** Deletes DIR and everything beneath it.
+     * @param dir : Directory to delete.
+     * */
+    private static void delete(Path dir) throws IOException {
+        try (Stream<Path> walk = Files.walk(dir)) {
+            walk.sorted(Comparator.reverseOrder())
+                .forEach(p -> p.toFile().delete());
+        }
+    }
+
+    /** Returns TEXT with the blanks at the end of each line, and any
+     * blank lines at its end, removed.
+     * @param text : Output or expected output.
+     * */
+    static String normalize(String text) {
+        StringBuilder result = new StringBuilder();
+        for (String line : text.split("\r?\n")) {
+            result.append(line.replaceAll("\\s+$", "")).append('\n');
+        }
+        return result.toString().replaceAll("\\s+$", "");
+    }
+
+    /** One run of a script, in its own directory. */
+    private class Session {
+
+        /** Session in the new, empty directory ROOT.
+         * @param root : Directory the script starts in.
+         * */
+        Session(File root) {
+            _root = root;
+            _cwd = root;
+        }
+
+        /** Runs every line of SCRIPT, throwing a GitletException if
+         * anything differs from what it expects.
+         * @param script : Script file.
+         * */
+        void run(File script) throws IOException {
+            Deque<String> lines = new ArrayDeque<String>();
+            include(script, lines);
+            while (!lines.isEmpty()) {
+                String line = lines.poll();
+                String[] words = line.trim().split("\\s+", 2);
+                String op = words[0];
+                String[] operands = words.length < 2 ? new String[0]
+                    : Batch.split(words[1]);
+                if (op.isEmpty() || op.startsWith("#") || op.equals("T")) {
+                    continue;
+                } else if (op.equals("I")) {
+                    include(new File(script.getParentFile(), operands[0]),
+                            lines);
+                } else if (op.equals("C")) {
+                    _cwd = operands.length == 0 ? _root
+                        : Utils.join(_root, operands[0]);
+                    _cwd.mkdirs();
+                } else if (op.equals("+")) {
+                    Files.copy(source(line, operands[1]).toPath(),
+                               file(operands[0]).toPath(),
+                               StandardCopyOption.REPLACE_EXISTING);
+                } else if (op.equals("-")) {
+                    file(operands[0]).delete();
+                } else if (op.equals("=")) {
+                    expect(line, Utils.readContentsAsString(
+                                   source(line, operands[1])),
+                           file(operands[0]).isFile()
+                           ? Utils.readContentsAsString(file(operands[0]))
+                           : null);
+                } else if (op.equals("*") || op.equals("E")) {
+                    if (file(operands[0]).exists() != op.equals("E")) {
+                        throw Utils.error("%s: %s", line, op.equals("E")
+                                          ? "file missing" : "file exists");
+                    }
+                } else if (op.equals("D")) {
+                    _patterns.put(operands[0], operands[1]);
+                } else if (op.equals(">")) {
+                    command(line, substitute(words[1]), lines);
+                } else {
+                    throw Utils.error("%s: unknown directive", line);
+                }
+            }
+        }
+
+        /** Adds the lines of SCRIPT to the front of LINES, which are the
+         * lines not yet run.
+         * @param script : Script file.
+         * @param lines : Lines not yet run.
+         * */
+        private void include(File script, Deque<String> lines)
+            throws IOException {
+            List<String> included = Files.readAllLines(script.toPath());
+            Collections.reverse(included);
+            for (String line : included) {
+                lines.push(line);
+            }
+        }
+
+        /** Runs the command COMMAND of script line LINE, and checks its
+         * output against the expected output at the front of LINES.
+         * @param line : Line of the script.
+         * @param command : Command with its variables substituted.
+         * @param lines : Lines not yet run.
+         * */
+        private void command(String line, String command,
+                             Deque<String> lines) throws IOException {
+            StringBuilder expected = new StringBuilder();
+            boolean pattern = false;
+            while (true) {
+                String next = lines.poll();
+                if (next == null) {
+                    throw Utils.error("%s: no <<< after output", line);
+                } else if (next.equals("<<<") || next.equals("<<<*")) {
+                    pattern = next.equals("<<<*");
+                    break;
+                }
+                expected.append(next).append('\n');
+            }
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            PrintStream out = new PrintStream(bytes, true);
+            Repository repo = _repositories.computeIfAbsent(
+                    _cwd, d -> new Repository(d, System.out));
+            repo.output(out);
+            try {
+                repo.run(Batch.split(command));
+            } catch (GitletException excp) {
+                out.println(excp.getMessage());
+                repo.discardState();
+            }
+            out.flush();
+            String actual = normalize(bytes.toString());
+            if (!pattern) {
+                expect(line, expected.toString(), actual);
+                return;
+            }
+            Matcher m = Pattern.compile(pattern(expected.toString()))
+                .matcher(actual);
+            if (!m.matches()) {
+                throw Utils.error("%s: output%n%s%ndoes not match%n%s",
+                                  line, actual, expected);
+            }
+            for (int i = 1; i <= m.groupCount(); i += 1) {
+                _groups.put(Integer.toString(i), m.group(i));
+            }
+        }
+
+        /** Throws a GitletException for script line LINE unless ACTUAL,
+         * which is null for a missing file, is EXPECTED.
+         * @param line : Line of the script.
+         * @param expected : Expected text.
+         * @param actual : Actual text, or null.
+         * */
+        private void expect(String line, String expected, String actual) {
+            if (actual == null
+                    || !normalize(expected).equals(normalize(actual))) {
+                throw Utils.error("%s: expected%n%s%nbut got%n%s", line,
+                                  normalize(expected), actual);
+            }
+        }
+
+        /** Returns TEXT with each ${N} replaced by the text matched by
+         * group N of the last pattern.
+         * @param text : Command line.
+         * */
+        private String substitute(String text) {
+            Matcher m = VARIABLE.matcher(text);
+            StringBuilder result = new StringBuilder();
+            while (m.find()) {
+                String value = _groups.get(m.group(1));
+                m.appendReplacement(result, Matcher.quoteReplacement(
+                        value == null ? m.group() : value));
+            }
+            m.appendTail(result);
+            return result.toString();
+        }
+
+        /** Returns the regular expression for the expected output EXPECTED
+         * of a <<<* command, in which each ${VAR} is a group matching the
+         * pattern VAR defines, or the text group VAR of the last match.
+         * @param expected : Expected output with its variables.
+         * */
+        private String pattern(String expected) {
+            Matcher m = VARIABLE.matcher(normalize(expected));
+            StringBuilder result = new StringBuilder();
+            while (m.find()) {
+                String name = m.group(1);
+                String value = _patterns.containsKey(name)
+                    ? "(" + _patterns.get(name) + ")"
+                    : Pattern.quote(_groups.getOrDefault(name, m.group()));
+                m.appendReplacement(result, Matcher.quoteReplacement(value));
+            }
+            m.appendTail(result);
+            return result.toString();
+        }
+
+        /** Returns file NAME in the current directory of the script.
+         * @param name : File name.
+         * */
+        private File file(String name) {
+            return Utils.join(_cwd, name);
+        }
+
+        /** Returns source file NAME, which script line LINE needs.
+         * @param line : Line of the script.
+         * @param name : Name of the source file.
+         * */
+        private File source(String line, String name) {
+            File result = Utils.join(_src, name);
+            if (!result.isFile()) {
+                throw Utils.error("%s: no source file %s", line, result);
+            }
+            return result;
+        }
+
+        /** Directory the script started in. */
+        private final File _root;
+
+        /** Directory the commands run in. */
+        private File _cwd;
+
+        /** Repository of each directory commands have run in. */
+        private final HashMap<File, Repository> _repositories =
+            new HashMap<File, Repository>();
+
+        /** Pattern of each variable defined by D. */
+        private final HashMap<String, String> _patterns =
+            new HashMap<String, String>();
+
+        /** Text matched by each group of the last pattern, by number. */
+        private final HashMap<String, String> _groups =
+            new HashMap<String, String>();
+    }
+
+    /** A variable reference, ${NAME}. */
+    private static final Pattern VARIABLE =
+        Pattern.compile("\\$\\{([^}]*)\\}");
+
+    /** Directory of the source files scripts copy. */
+    private final File _src;
+
+    /** Milliseconds each script took to run. */
+    private final Map<File, Long> _millis =
+        new ConcurrentHashMap<File, Long>();
+
+}
@@ -0,0 +1,268 @@
+package gitlet;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+
+/** Cache of the blob SHA-1s of working files, keyed by their stat data.
+ *  For each path it remembers the modification time, size and file key
+ *  seen when the file was last hashed.  A file whose stat data still match
+ *  is not read again.  A file modified in the same clock tick as the cache
+ *  was written might have changed after it was hashed without changing its
+ *  stat data, so such "racily clean" entries are always hashed again.
+ *  @author Keshav Sharma
+ */
+class StatCache {
+
+    /** Version number written at the start of the cache file. */
+    static final int VERSION = 1;
+
+    /** Cache kept in FILE for the working files under WORKDIR.
+     * @param file : File the cache is saved in.
+     * @param workDir : Working directory the paths are relative to.
+     * */
+    StatCache(File file, File workDir) {
+        _file = file;
+        _workDir = workDir.toPath();
+    }
+
+    /** Returns the SHA-1 of the contents of working file PATH, or null if
+     * there is no such plain file.  The file is only read if its stat data
+     * differ from those cached, or its entry is racily clean.
+     * @param path : Path of the file relative to the working directory.
+     * */
+    String hash(String path) {
+        return hashAll(Collections.singletonList(path), new Hasher(null))
+            .get(path);
+    }
+
+    /** Returns the SHA-1s of the contents of working files PATHS, mapping
+     * a path to null if there is no such plain file.  The files that must
+     * be read are hashed in parallel by HASHER.  A cached SHA-1 is only
+     * used if HASHER has no further work to do for it.
+     * @param paths : Paths of the files relative to the working directory.
+     * @param hasher : Hasher for the files that must be read.
+     * */
+    HashMap<String, String> hashAll(Collection<String> paths, Hasher hasher) {
+        load();
+        HashMap<String, String> result = new HashMap<String, String>();
+        ArrayList<String> stale = new ArrayList<String>();
+        ArrayList<File> files = new ArrayList<File>();
+        ArrayList<BasicFileAttributes> stats =
+                new ArrayList<BasicFileAttributes>();
+        for (String path : paths) {
+            BasicFileAttributes attrs = stat(path);
+            Entry entry = _entries.get(path);
+            if (attrs == null || !attrs.isRegularFile()) {
+                if (_entries.remove(path) != null) {
+                    _dirty = true;
+                }
+                result.put(path, null);
+            } else if (entry != null && entry.matches(attrs)
+                    && entry._mtime < _racyLimit
+                    && hasher.done(entry._hash)) {
+                result.put(path, entry._hash);
+            } else {
+                stale.add(path);
+                files.add(_workDir.resolve(path).toFile());
+                stats.add(attrs);
+            }
+        }
+        String[] hashes = hasher.hash(files);
+        for (int i = 0; i < hashes.length; i += 1) {
+            _entries.put(stale.get(i), new Entry(stats.get(i), hashes[i]));
+            result.put(stale.get(i), hashes[i]);
+            _dirty = true;
+        }
+        return result;
+    }
+
+    /** Records that working file PATH currently has SHA-1 HASH, as when
+     * the caller has just read or written it.
+     * @param path : Path of the file relative to the working directory.
+     * @param hash : SHA-1 of its contents.
+     * */
+    void update(String path, String hash) {
+        load();
+        BasicFileAttributes attrs = stat(path);
+        if (attrs != null && attrs.isRegularFile()) {
+            _entries.put(path, new Entry(attrs, hash));
+            _dirty = true;
+        }
+    }
+
+    /** Forgets every path not in PATHS.
+     * @param paths : Paths still worth caching.
+     * */
+    void retainAll(Collection<String> paths) {
+        load();
+        if (_entries.keySet().retainAll(paths)) {
+            _dirty = true;
+        }
+    }
+
+    /** Writes the cache if it changed since it was read. */
+    void save() {
+        if (!_dirty) {
+            return;
+        }
+        File temp = new File(_file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(temp)))) {
+            out.writeInt(VERSION);
+            out.writeInt(_entries.size());
+            for (HashMap.Entry<String, Entry> e : _entries.entrySet()) {
+                out.writeUTF(e.getKey());
+                e.getValue().write(out);
+            }
+        } catch (IOException excp) {
+            throw Utils.error("Cannot write index: %s", excp.getMessage());
+        }
+        try {
+            Files.move(temp.toPath(), _file.toPath(),
+                    StandardCopyOption.ATOMIC_MOVE);
+            _racyLimit = modified(_file.toPath());
+        } catch (IOException excp) {
+            throw Utils.error("Cannot write index: %s", excp.getMessage());
+        }
+        _dirty = false;
+    }
+
+    /** Reads the cache on first use.  A missing or unreadable cache is
+     * treated as empty. */
+    private void load() {
+        if (_entries != null) {
+            return;
+        }
+        _entries = new HashMap<String, Entry>();
+        if (!_file.isFile()) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(_file)))) {
+            _racyLimit = modified(_file.toPath());
+            if (in.readInt() != VERSION) {
+                return;
+            }
+            for (int n = in.readInt(); n > 0; n -= 1) {
+                String path = in.readUTF();
+                _entries.put(path, new Entry(in));
+            }
+        } catch (IOException excp) {
+            _entries.clear();
+            _dirty = true;
+        }
+    }
+
+    /** Returns the stat data of working file PATH, or null if it does
+     * not exist.
+     * @param path : Path of the file relative to the working directory.
+     * */
+    private BasicFileAttributes stat(String path) {
+        try {
+            return Files.readAttributes(_workDir.resolve(path),
+                    BasicFileAttributes.class);
+        } catch (NoSuchFileException excp) {
+            return null;
+        } catch (IOException excp) {
+            throw Utils.error("Cannot stat %s: %s", path, excp.getMessage());
+        }
+    }
+
+    /** Returns the modification time of FILE in nanoseconds.
+     * @param file : File to examine.
+     * */
+    private static long modified(Path file) throws IOException {
+        return Files.getLastModifiedTime(file).to(TimeUnit.NANOSECONDS);
+    }
+
+    /** The stat data and SHA-1 of one working file. */
+    private static class Entry {
+
+        /** Entry for a file with stat data ATTRS and SHA-1 HASH.
+         * @param attrs : Stat data of the file.
+         * @param hash : SHA-1 of its contents.
+         * */
+        Entry(BasicFileAttributes attrs, String hash) {
+            _mtime = attrs.lastModifiedTime().to(TimeUnit.NANOSECONDS);
+            _size = attrs.size();
+            _key = String.valueOf(attrs.fileKey());
+            _hash = hash;
+        }
+
+        /** Entry read from IN.
+         * @param in : Stream positioned at a saved entry.
+         * */
+        Entry(DataInputStream in) throws IOException {
+            _mtime = in.readLong();
+            _size = in.readLong();
+            _key = in.readUTF();
+            byte[] hash = new byte[Utils.UID_BYTES];
+            in.readFully(hash);
+            _hash = Utils.toHex(hash, 0);
+        }
+
+        /** Writes this entry to OUT.
+         * @param out : Stream to write to.
+         * */
+        void write(DataOutputStream out) throws IOException {
+            out.writeLong(_mtime);
+            out.writeLong(_size);
+            out.writeUTF(_key);
+            out.write(Utils.fromHex(_hash));
+        }
+
+        /** Returns true iff ATTRS are the stat data this entry recorded.
+         * @param attrs : Current stat data of the file.
+         * */
+        boolean matches(BasicFileAttributes attrs) {
+            return _mtime == attrs.lastModifiedTime().to(TimeUnit.NANOSECONDS)
+                && _size == attrs.size()
+                && _key.equals(String.valueOf(attrs.fileKey()));
+        }
+
+        /** Modification time in nanoseconds. */
+        private final long _mtime;
+
+        /** Size in bytes. */
+        private final long _size;
+
+        /** Identity of the file, such as its device and inode. */
+        private final String _key;
+
+        /** SHA-1 of the contents. */
+        private final String _hash;
+    }
+
+    /** File the cache is saved in. */
+    private final File _file;
+
+    /** Working directory the paths are relative to. */
+    private final Path _workDir;
+
+    /** Entries by path, or null if not yet read. */
+    private HashMap<String, Entry> _entries;
+
+    /** Entries whose files were modified at or after this time, in
+     * nanoseconds, may be stale even if their stat data match. */
+    private long _racyLimit = Long.MIN_VALUE;
+
+    /** True iff the entries changed since they were read. */
+    private boolean _dirty;
+
+}
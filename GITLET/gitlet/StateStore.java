@@ -0,0 +1,95 @@
+package gitlet;
+
+import java.io.File;
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+
+/** The serialized state files of a repository, such as the branch
+ *  pointers and the staging area.  A command reads them through a store,
+ *  which remembers the bytes it read, and reports each structure it may
+ *  have changed with save.  Nothing is written until flush, which writes
+ *  only the saved structures whose bytes actually differ from those on
+ *  disk, all as one Checkpoint: every file is replaced by renaming a
+ *  temporary file over it, after a single fsync of the journal.
+ *  @author Keshav Sharma
+ */
+class StateStore {
+
+    /** Store for the state files of the .gitlet directory DIR.
+     * @param dir : The .gitlet directory.
+     * */
+    StateStore(File dir) {
+        _dir = dir;
+        _checkpoint = new Checkpoint(dir);
+        _onDisk = new HashMap<File, byte[]>();
+        _saved = new LinkedHashMap<File, Serializable>();
+    }
+
+    /** Returns the object of type TYPE saved in FILE, remembering its
+     * bytes so that an unchanged object is not written back.
+     * @param file : A state file.
+     * @param type : Class of the object it holds.
+     * */
+    <T extends Serializable> T read(File file, Class<T> type) {
+        T result = Utils.readObject(file, type);
+        _onDisk.put(file, Utils.serialize(result));
+        return result;
+    }
+
+    /** Records that OBJ, which may have changed, is the new contents of
+     * FILE.  OBJ is serialized when the store is flushed, so later changes
+     * to it are included.
+     * @param file : A state file.
+     * @param obj : Its contents.
+     * */
+    void save(File file, Serializable obj) {
+        _saved.put(file, obj);
+    }
+
+    /** Writes every saved object that differs from its file, as a single
+     * checkpoint, or hands them to DAEMON if it is not null.
+     * @param daemon : Daemon writing state behind commands, or null.
+     * */
+    void flush(Daemon daemon) {
+        LinkedHashMap<String, byte[]> changed =
+                new LinkedHashMap<String, byte[]>();
+        for (HashMap.Entry<File, Serializable> e : _saved.entrySet()) {
+            File file = e.getKey();
+            byte[] bytes = Utils.serialize(e.getValue());
+            if (Arrays.equals(bytes, _onDisk.get(file))) {
+                continue;
+            }
+            _onDisk.put(file, bytes);
+            if (daemon != null) {
+                daemon.defer(file, bytes);
+            } else {
+                changed.put(_dir.toPath().relativize(file.toPath())
+                            .toString(), bytes);
+            }
+        }
+        _saved.clear();
+        _checkpoint.commit(changed);
+    }
+
+    /** Forgets everything read and saved, as when the objects read may
+     * no longer match the files. */
+    void discard() {
+        _onDisk.clear();
+        _saved.clear();
+    }
+
+    /** The .gitlet directory. */
+    private final File _dir;
+
+    /** Writer of the changed files. */
+    private final Checkpoint _checkpoint;
+
+    /** Bytes of each state file as last read or written. */
+    private final HashMap<File, byte[]> _onDisk;
+
+    /** Objects saved since the last flush, by file. */
+    private final LinkedHashMap<File, Serializable> _saved;
+
+}
@@ -0,0 +1,187 @@
+package gitlet;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/** Line-level three-way merge of two files that both descend from a
+ *  common base.  Each side is diffed against the base, and the base is
+ *  then copied to the output, with every region changed on one side only
+ *  replaced by that side's lines.  Where the two sides change the same or
+ *  adjacent base lines differently, both versions are written between
+ *  conflict markers:
+ *  <pre>
+ *      &lt;&lt;&lt;&lt;&lt;&lt;&lt; HEAD
+ *      lines of the current branch
+ *      =======
+ *      lines of the given branch
+ *      &gt;&gt;&gt;&gt;&gt;&gt;&gt;
+ *  </pre>
+ *  The result is written straight to a stream as it is found.
+ *  @author Keshav Sharma
+ */
+class ThreeWayMerge {
+
+    /** Marker opening a conflict. */
+    static final byte[] OURS = "<<<<<<< HEAD\n"
+        .getBytes(StandardCharsets.UTF_8);
+
+    /** Marker separating the two sides of a conflict. */
+    static final byte[] SEPARATOR = "=======\n"
+        .getBytes(StandardCharsets.UTF_8);
+
+    /** Marker closing a conflict. */
+    static final byte[] THEIRS = ">>>>>>>\n"
+        .getBytes(StandardCharsets.UTF_8);
+
+    /** Merge of the changes from BASE to OURS and from BASE to THEIRS.
+     * @param base : Lines of the common ancestor.
+     * @param ours : Lines of the current branch.
+     * @param theirs : Lines of the given branch.
+     * */
+    ThreeWayMerge(Lines base, Lines ours, Lines theirs) {
+        _base = base;
+        _ours = ours;
+        _theirs = theirs;
+        int[][] numbers = Lines.intern(base, ours, theirs);
+        _oursNumbers = numbers[1];
+        _theirsNumbers = numbers[2];
+        _oursEdits = Diff.diff(numbers[0], numbers[1]);
+        _theirsEdits = Diff.diff(numbers[0], numbers[2]);
+    }
+
+    /** Writes the merged file to OUT, returning true iff it has
+     * conflicts.
+     * @param out : Stream to write to.
+     * */
+    boolean write(OutputStream out) throws IOException {
+        boolean conflicts = false;
+        int i = 0, j = 0;
+        int oursShift = 0, theirsShift = 0;
+        int copied = 0;
+        while (i < _oursEdits.size() || j < _theirsEdits.size()) {
+            int lo, hi;
+            if (j == _theirsEdits.size() || (i < _oursEdits.size()
+                    && _oursEdits.get(i).beginA()
+                       <= _theirsEdits.get(j).beginA())) {
+                lo = _oursEdits.get(i).beginA();
+                hi = _oursEdits.get(i).endA();
+            } else {
+                lo = _theirsEdits.get(j).beginA();
+                hi = _theirsEdits.get(j).endA();
+            }
+            int oursEnd = i, theirsEnd = j;
+            int oursGrowth = 0, theirsGrowth = 0;
+            boolean grew = true;
+            while (grew) {
+                grew = false;
+                while (oursEnd < _oursEdits.size()
+                       && _oursEdits.get(oursEnd).beginA() <= hi) {
+                    Diff.Edit e = _oursEdits.get(oursEnd);
+                    hi = Math.max(hi, e.endA());
+                    oursGrowth += growth(e);
+                    oursEnd += 1;
+                    grew = true;
+                }
+                while (theirsEnd < _theirsEdits.size()
+                       && _theirsEdits.get(theirsEnd).beginA() <= hi) {
+                    Diff.Edit e = _theirsEdits.get(theirsEnd);
+                    hi = Math.max(hi, e.endA());
+                    theirsGrowth += growth(e);
+                    theirsEnd += 1;
+                    grew = true;
+                }
+            }
+            _base.write(out, copied, lo);
+            int oursLo = lo + oursShift, oursHi = hi + oursShift + oursGrowth;
+            int theirsLo = lo + theirsShift;
+            int theirsHi = hi + theirsShift + theirsGrowth;
+            if (theirsEnd == j) {
+                _ours.write(out, oursLo, oursHi);
+            } else if (oursEnd == i) {
+                _theirs.write(out, theirsLo, theirsHi);
+            } else if (same(oursLo, oursHi, theirsLo, theirsHi)) {
+                _ours.write(out, oursLo, oursHi);
+            } else {
+                conflicts = true;
+                out.write(OURS);
+                writeSide(out, _ours, oursLo, oursHi);
+                out.write(SEPARATOR);
+                writeSide(out, _theirs, theirsLo, theirsHi);
+                out.write(THEIRS);
+            }
+            oursShift += oursGrowth;
+            theirsShift += theirsGrowth;
+            copied = hi;
+            i = oursEnd;
+            j = theirsEnd;
+        }
+        _base.write(out, copied, _base.size());
+        return conflicts;
+    }
+
+    /** Returns the number of lines edit E adds to its sequence.
+     * @param e : An edit.
+     * */
+    private static int growth(Diff.Edit e) {
+        return (e.endB() - e.beginB()) - (e.endA() - e.beginA());
+    }
+
+    /** Returns true iff lines [OURSLO, OURSHI) of ours equal lines
+     * [THEIRSLO, THEIRSHI) of theirs.
+     * @param oursLo : First line of ours.
+     * @param oursHi : One past the last line of ours.
+     * @param theirsLo : First line of theirs.
+     * @param theirsHi : One past the last line of theirs.
+     * */
+    private boolean same(int oursLo, int oursHi, int theirsLo,
+                         int theirsHi) {
+        if (oursHi - oursLo != theirsHi - theirsLo) {
+            return false;
+        }
+        for (int k = 0; k < oursHi - oursLo; k += 1) {
+            if (_oursNumbers[oursLo + k] != _theirsNumbers[theirsLo + k]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Writes lines FROM .. TO-1 of LINES to OUT as one side of a
+     * conflict, ending it with a newline so the next marker starts a line.
+     * @param out : Stream to write to.
+     * @param lines : Lines of one side.
+     * @param from : Index of the first line.
+     * @param to : One past the index of the last line.
+     * */
+    private static void writeSide(OutputStream out, Lines lines, int from,
+                                  int to) throws IOException {
+        lines.write(out, from, to);
+        if (to > from && !lines.terminated(to - 1)) {
+            out.write('\n');
+        }
+    }
+
+    /** Lines of the common ancestor. */
+    private final Lines _base;
+
+    /** Lines of the current branch. */
+    private final Lines _ours;
+
+    /** Lines of the given branch. */
+    private final Lines _theirs;
+
+    /** Line numbers of the current branch. */
+    private final int[] _oursNumbers;
+
+    /** Line numbers of the given branch. */
+    private final int[] _theirsNumbers;
+
+    /** Edits from the base to the current branch. */
+    private final List<Diff.Edit> _oursEdits;
+
+    /** Edits from the base to the given branch. */
+    private final List<Diff.Edit> _theirsEdits;
+
+}
@@ -0,0 +1,288 @@
+package gitlet;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/** Tree objects, which record the contents of one directory of a commit.
+ *  A tree lists, in name order, each file of the directory with the SHA-1
+ *  of its blob and each subdirectory with the SHA-1 of its own tree, and
+ *  is kept in the object store under the SHA-1 of its encoding.  Two
+ *  commits that agree on a directory therefore share its tree, so a new
+ *  commit writes only the trees on the paths it changes, and two trees
+ *  with the same id can be compared without reading them.  An entry is
+ *  encoded as a kind byte, the varint length and UTF-8 bytes of its name,
+ *  and the UID_BYTES raw bytes of its id.  The empty tree is never
+ *  stored; its id is EMPTY.
+ *  @author Keshav Sharma
+ */
+class Tree {
+
+    /** Id of the tree with no entries. */
+    static final String EMPTY = Utils.sha1();
+
+    /** Kind byte of an entry for a file. */
+    static final byte FILE = 'f';
+
+    /** Kind byte of an entry for a subdirectory. */
+    static final byte DIR = 'd';
+
+    /** Returns the id of the tree that results from applying CHANGES to
+     * tree ID, writing the trees that change to STORE.  CHANGES maps each
+     * changed path to its new blob id, or to null if the file is removed.
+     * Subtrees that CHANGES does not reach are kept as they are, and a
+     * directory left with no entries disappears.
+     * @param store : Object store holding the trees.
+     * @param id : Id of the tree to start from.
+     * @param changes : Changed paths, relative to the tree, to blob ids.
+     * */
+    static String update(ObjectStore store, String id,
+                         Map<String, String> changes) {
+        if (changes.isEmpty()) {
+            return id;
+        }
+        TreeMap<String, Entry> entries = read(store, id);
+        TreeMap<String, HashMap<String, String>> below =
+                new TreeMap<String, HashMap<String, String>>();
+        for (Map.Entry<String, String> change : changes.entrySet()) {
+            String path = change.getKey();
+            int slash = path.indexOf('/');
+            if (slash < 0) {
+                if (change.getValue() == null) {
+                    entries.remove(path);
+                } else {
+                    entries.put(path, new Entry(FILE, change.getValue()));
+                }
+            } else {
+                below.computeIfAbsent(path.substring(0, slash),
+                        k -> new HashMap<String, String>())
+                    .put(path.substring(slash + 1), change.getValue());
+            }
+        }
+        for (Map.Entry<String, HashMap<String, String>> dir
+                 : below.entrySet()) {
+            Entry old = entries.get(dir.getKey());
+            String sub = old != null && old._kind == DIR ? old._id : EMPTY;
+            sub = update(store, sub, dir.getValue());
+            if (sub.equals(EMPTY)) {
+                entries.remove(dir.getKey());
+            } else {
+                entries.put(dir.getKey(), new Entry(DIR, sub));
+            }
+        }
+        return write(store, entries);
+    }
+
+    /** Returns the map from path to blob id of every file under tree ID.
+     * @param store : Object store holding the trees.
+     * @param id : Id of the tree.
+     * */
+    static HashMap<String, String> flatten(ObjectStore store, String id) {
+        HashMap<String, String> result = new HashMap<String, String>();
+        flatten(store, id, "", result);
+        return result;
+    }
+
+    /** Adds every file under tree ID to RESULT, with PREFIX before its
+     * path.
+     * @param store : Object store holding the trees.
+     * @param id : Id of the tree.
+     * @param prefix : Path of the tree followed by a slash, or "".
+     * @param result : Map from path to blob id.
+     * */
+    private static void flatten(ObjectStore store, String id, String prefix,
+                                HashMap<String, String> result) {
+        for (Map.Entry<String, Entry> e : read(store, id).entrySet()) {
+            Entry entry = e.getValue();
+            if (entry._kind == FILE) {
+                result.put(prefix + e.getKey(), entry._id);
+            } else {
+                flatten(store, entry._id, prefix + e.getKey() + "/", result);
+            }
+        }
+    }
+
+    /** Returns the blob id of file PATH in tree ID, or null if there is
+     * no such file.  Only the trees along PATH are read.
+     * @param store : Object store holding the trees.
+     * @param id : Id of the tree.
+     * @param path : Path of the file relative to the tree.
+     * */
+    static String lookup(ObjectStore store, String id, String path) {
+        String[] names = path.split("/");
+        for (int k = 0; k < names.length; k += 1) {
+            Entry entry = read(store, id).get(names[k]);
+            byte kind = k == names.length - 1 ? FILE : DIR;
+            if (entry == null || entry._kind != kind) {
+                return null;
+            }
+            id = entry._id;
+        }
+        return id;
+    }
+
+    /** Adds to RESULT every file path whose blob differs between trees A
+     * and B, mapped to its blob ids in A and B, either of which is null if
+     * the file is missing from that tree.  Subtrees with equal ids are
+     * skipped without being read.
+     * @param store : Object store holding the trees.
+     * @param a : Id of the first tree.
+     * @param b : Id of the second tree.
+     * @param result : Map from path to its blob ids in A and B.
+     * */
+    static void diff(ObjectStore store, String a, String b,
+                     Map<String, String[]> result) {
+        diff(store, a, b, "", result);
+    }
+
+    /** As diff(STORE, A, B, RESULT), with PREFIX before every path.
+     * @param store : Object store holding the trees.
+     * @param a : Id of the first tree.
+     * @param b : Id of the second tree.
+     * @param prefix : Path of the trees followed by a slash, or "".
+     * @param result : Map from path to its blob ids in A and B.
+     * */
+    private static void diff(ObjectStore store, String a, String b,
+                             String prefix, Map<String, String[]> result) {
+        if (a.equals(b)) {
+            return;
+        }
+        TreeMap<String, Entry> left = read(store, a);
+        TreeMap<String, Entry> right = read(store, b);
+        TreeMap<String, Entry> names = new TreeMap<String, Entry>(left);
+        names.putAll(right);
+        for (String name : names.keySet()) {
+            Entry x = left.get(name);
+            Entry y = right.get(name);
+            String path = prefix + name;
+            if (x != null && y != null && x._id.equals(y._id)
+                    && x._kind == y._kind) {
+                continue;
+            }
+            String xFile = x != null && x._kind == FILE ? x._id : null;
+            String yFile = y != null && y._kind == FILE ? y._id : null;
+            if (xFile != null || yFile != null) {
+                result.put(path, new String[] { xFile, yFile });
+            }
+            String xDir = x != null && x._kind == DIR ? x._id : EMPTY;
+            String yDir = y != null && y._kind == DIR ? y._id : EMPTY;
+            diff(store, xDir, yDir, path + "/", result);
+        }
+    }
+
+    /** Adds the blob ids of the files of tree ID to FILES and the tree
+     * ids of its subdirectories to SUBTREES.
+     * @param store : Object store holding the tree.
+     * @param id : Id of the tree.
+     * @param files : List to add the blob ids to.
+     * @param subtrees : List to add the tree ids to.
+     * */
+    static void entries(ObjectStore store, String id, List<String> files,
+                        List<String> subtrees) {
+        for (Entry entry : read(store, id).values()) {
+            if (entry._kind == FILE) {
+                files.add(entry._id);
+            } else {
+                subtrees.add(entry._id);
+            }
+        }
+    }
+
+    /** Adds the files of tree ID to FILES and its subdirectories to
+     * SUBTREES, each keyed by name.
+     * @param store : Object store holding the tree.
+     * @param id : Id of the tree.
+     * @param files : Map to add the blob id of each file to.
+     * @param subtrees : Map to add the tree id of each subdirectory to.
+     * */
+    static void entries(ObjectStore store, String id,
+                        Map<String, String> files,
+                        Map<String, String> subtrees) {
+        for (Map.Entry<String, Entry> e : read(store, id).entrySet()) {
+            if (e.getValue()._kind == FILE) {
+                files.put(e.getKey(), e.getValue()._id);
+            } else {
+                subtrees.put(e.getKey(), e.getValue()._id);
+            }
+        }
+    }
+
+    /** Returns the id of the tree holding every file of FILES, writing
+     * its trees to STORE.
+     * @param store : Object store to hold the trees.
+     * @param files : Map from path to blob id.
+     * */
+    static String build(ObjectStore store, Map<String, String> files) {
+        return update(store, EMPTY, files);
+    }
+
+    /** Returns the entries of tree ID, by name.
+     * @param store : Object store holding the tree.
+     * @param id : Id of the tree.
+     * */
+    private static TreeMap<String, Entry> read(ObjectStore store,
+                                               String id) {
+        TreeMap<String, Entry> result = new TreeMap<String, Entry>();
+        if (id.equals(EMPTY)) {
+            return result;
+        }
+        ByteBuffer in = ByteBuffer.wrap(store.get(id));
+        byte[] raw = new byte[Utils.UID_BYTES];
+        while (in.hasRemaining()) {
+            byte kind = in.get();
+            byte[] name = new byte[CommitCodec.readVarint(in)];
+            in.get(name);
+            in.get(raw);
+            result.put(new String(name, StandardCharsets.UTF_8),
+                       new Entry(kind, Utils.toHex(raw, 0)));
+        }
+        return result;
+    }
+
+    /** Writes the tree with ENTRIES to STORE and returns its id.
+     * @param store : Object store to hold the tree.
+     * @param entries : Entries of the tree, by name.
+     * */
+    private static String write(ObjectStore store,
+                                TreeMap<String, Entry> entries) {
+        if (entries.isEmpty()) {
+            return EMPTY;
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (Map.Entry<String, Entry> e : entries.entrySet()) {
+            byte[] name = e.getKey().getBytes(StandardCharsets.UTF_8);
+            out.write(e.getValue()._kind);
+            CommitCodec.writeVarint(out, name.length);
+            out.writeBytes(name);
+            out.writeBytes(Utils.fromHex(e.getValue()._id));
+        }
+        byte[] contents = out.toByteArray();
+        String id = Utils.sha1(contents);
+        store.put(id, contents);
+        return id;
+    }
+
+    /** One entry of a tree. */
+    private static class Entry {
+
+        /** Entry of kind KIND with id ID.
+         * @param kind : FILE or DIR.
+         * @param id : Blob id of a file, or tree id of a directory.
+         * */
+        Entry(byte kind, String id) {
+            _kind = kind;
+            _id = id;
+        }
+
+        /** FILE or DIR. */
+        private final byte _kind;
+
+        /** Blob id of a file, or tree id of a directory. */
+        private final String _id;
+    }
+
+}
@@ -0,0 +1,14 @@
+package gitlet;
+
+/** Exception indicating that a command needs a staging area with no
+ *  changes.
+ *  @author Keshav Sharma
+ */
+public class UncommittedChangesException extends GitletException {
+
+    /** A UncommittedChangesException with MSG as its message. */
+    UncommittedChangesException(String msg) {
+        super(msg);
+    }
+
+}
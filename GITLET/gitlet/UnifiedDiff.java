@@ -0,0 +1,172 @@
+package gitlet;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/** Writer of file differences in unified format.  For each changed file
+ *  it writes a header naming the file on each side, followed by hunks of
+ *  changed lines with CONTEXT unchanged lines around them:
+ *  <pre>
+ *      diff --git a/NAME b/NAME
+ *      --- a/NAME
+ *      +++ b/NAME
+ *      @@ -START,COUNT +START,COUNT @@
+ *       unchanged line
+ *      -removed line
+ *      +added line
+ *  </pre>
+ *  A missing file is named /dev/null.  Lines are copied from the file
+ *  buffers to the output as they are, so files are never decoded.
+ *  @author Keshav Sharma
+ */
+class UnifiedDiff {
+
+    /** Number of unchanged lines shown on each side of a change. */
+    static final int CONTEXT = 3;
+
+    /** Number of leading bytes searched for a NUL to decide whether a
+     * file is binary. */
+    static final int BINARY_PROBE = 8000;
+
+    /** Size of the largest file that is diffed, as lines are found by
+     * int offsets into a single buffer. */
+    static final long MAX_SIZE = Integer.MAX_VALUE;
+
+    /** Writer of differences to OUT.
+     * @param out : Stream to write to.
+     * */
+    UnifiedDiff(OutputStream out) {
+        _out = out;
+    }
+
+    /** Writes the differences between the versions BEFORE and AFTER of
+     * file NAME, either of which is null if the file is missing.
+     * @param name : Path of the file.
+     * @param before : Contents of the old version, or null.
+     * @param after : Contents of the new version, or null.
+     * */
+    void write(String name, ByteBuffer before, ByteBuffer after)
+        throws IOException {
+        print("diff --git a/" + name + " b/" + name + "\n");
+        if (binary(before) || binary(after)) {
+            print("Binary files " + label("a/", name, before) + " and "
+                  + label("b/", name, after) + " differ\n");
+            return;
+        }
+        print("--- " + label("a/", name, before) + "\n");
+        print("+++ " + label("b/", name, after) + "\n");
+        Lines a = new Lines(before == null ? EMPTY : before);
+        Lines b = new Lines(after == null ? EMPTY : after);
+        int[][] numbers = Lines.intern(a, b);
+        List<Diff.Edit> edits = Diff.diff(numbers[0], numbers[1]);
+        for (int first = 0, last; first < edits.size(); first = last) {
+            last = first + 1;
+            while (last < edits.size() && edits.get(last).beginA()
+                   - edits.get(last - 1).endA() <= 2 * CONTEXT) {
+                last += 1;
+            }
+            hunk(a, b, edits.subList(first, last));
+        }
+    }
+
+    /** Writes the hunk of lines of A and B covering EDITS and their
+     * context.
+     * @param a : Lines of the old version.
+     * @param b : Lines of the new version.
+     * @param edits : Edits close enough to share a hunk.
+     * */
+    private void hunk(Lines a, Lines b, List<Diff.Edit> edits)
+        throws IOException {
+        Diff.Edit first = edits.get(0);
+        Diff.Edit last = edits.get(edits.size() - 1);
+        int context = Math.min(CONTEXT, first.beginA());
+        int aStart = first.beginA() - context;
+        int bStart = first.beginB() - context;
+        int aEnd = Math.min(a.size(), last.endA() + CONTEXT);
+        int bEnd = last.endB() + (aEnd - last.endA());
+        print("@@ -" + range(aStart, aEnd) + " +" + range(bStart, bEnd)
+              + " @@\n");
+        int i = aStart;
+        for (Diff.Edit e : edits) {
+            lines(' ', a, i, e.beginA());
+            lines('-', a, e.beginA(), e.endA());
+            lines('+', b, e.beginB(), e.endB());
+            i = e.endA();
+        }
+        lines(' ', a, i, aEnd);
+    }
+
+    /** Writes lines FROM .. TO-1 of LINES, each after PREFIX.
+     * @param prefix : Character marking the kind of line.
+     * @param lines : Lines to take them from.
+     * @param from : Index of the first line.
+     * @param to : One past the index of the last line.
+     * */
+    private void lines(char prefix, Lines lines, int from, int to)
+        throws IOException {
+        for (int k = from; k < to; k += 1) {
+            _out.write(prefix);
+            lines.write(_out, k, k + 1);
+            if (!lines.terminated(k)) {
+                print("\n\\ No newline at end of file\n");
+            }
+        }
+    }
+
+    /** Returns the hunk header range of lines FROM .. TO-1.
+     * @param from : Index of the first line.
+     * @param to : One past the index of the last line.
+     * */
+    private static String range(int from, int to) {
+        if (to - from == 1) {
+            return Integer.toString(from + 1);
+        }
+        return (to == from ? from : from + 1) + "," + (to - from);
+    }
+
+    /** Returns the name of file NAME on the side marked by PREFIX, or
+     * /dev/null if its CONTENTS are missing.
+     * @param prefix : "a/" or "b/".
+     * @param name : Path of the file.
+     * @param contents : Contents of the file, or null.
+     * */
+    private static String label(String prefix, String name,
+                                ByteBuffer contents) {
+        return contents == null ? "/dev/null" : prefix + name;
+    }
+
+    /** Returns true iff CONTENTS has a NUL among its first BINARY_PROBE
+     * bytes.
+     * @param contents : Contents of a file, or null.
+     * */
+    private static boolean binary(ByteBuffer contents) {
+        if (contents == null) {
+            return false;
+        }
+        int end = Math.min(contents.limit(),
+                           contents.position() + BINARY_PROBE);
+        for (int i = contents.position(); i < end; i += 1) {
+            if (contents.get(i) == 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Writes TEXT to the output.
+     * @param text : Text to write.
+     * */
+    private void print(String text) throws IOException {
+        _out.write(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /** Contents of a missing file. */
+    private static final ByteBuffer EMPTY = ByteBuffer.allocate(0);
+
+    /** Stream the differences are written to. */
+    private final OutputStream _out;
+
+}
@@ -1,12 +1,35 @@
 package gitlet;
 
 import ucb.junit.textui;
+import org.junit.After;
 import org.junit.Test;
 
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+import java.util.zip.Deflater;
 
 import static org.junit.Assert.*;
 
@@ -21,6 +44,45 @@ public class UnitTest {
         System.exit(textui.runClasses(UnitTest.class));
     }
 
+    /** Root commit shared by the commit stores of the tests. */
+    private static final Commit ROOT =
+        new Commit("initial commit", null, null, null, null);
+
+    /** Deletes the temporary directories made by the test. */
+    @After
+    public void deleteTempDirs() throws IOException {
+        for (File dir : _tempDirs) {
+            try (Stream<Path> paths = Files.walk(dir.toPath())) {
+                paths.sorted(Comparator.reverseOrder())
+                    .map(Path::toFile).forEach(File::delete);
+            }
+        }
+        _tempDirs.clear();
+    }
+
+    /** Returns a new temporary directory, named starting with PREFIX, that
+     * is deleted after the test.
+     * @param prefix : Start of the name of the directory.
+     * */
+    private File tempDir(String prefix) throws IOException {
+        File dir = Files.createTempDirectory(prefix).toFile();
+        _tempDirs.add(dir);
+        return dir;
+    }
+
+    /** Returns a new commit store in DIR that holds only ROOT.
+     * @param dir : Directory for the files of the store.
+     * */
+    private CommitStore newCommitStore(File dir) throws IOException {
+        CommitStore store = new CommitStore(dir, new ObjectStore(dir));
+        store.create();
+        store.put(ROOT);
+        return store;
+    }
+
+    /** Temporary directories made by the test. */
+    private final ArrayList<File> _tempDirs = new ArrayList<File>();
+
     /** A dummy test to avoid complaint. */
     @Test
     @SuppressWarnings("unchecked")
@@ -35,12 +97,9 @@ public class UnitTest {
         HashMap<String, String> testF2SHA1
                 = Utils.readObject(Main.fSHA1(), HashMap.class);
         assertTrue(testF2SHA1.containsKey("hello.txt"));
-        HashMap<String, String> testFileSource
-                = Utils.readObject(Main.fS(), HashMap.class);
         assertEquals(Utils.readContentsAsString(hello),
-                testFileSource.get(testF2SHA1.get("hello.txt")));
+                Main.objects().getAsString(testF2SHA1.get("hello.txt")));
         Utils.writeObject(Main.fSHA1(), testF2SHA1);
-        Utils.writeObject(Main.fS(), testFileSource);
         Utils.restrictedDelete(hello);
     }
 
@@ -110,8 +169,7 @@ public class UnitTest {
         commitCommand1[2] = "old";
         commitCommand1[3] = "friend";
         Main.main(commitCommand1);
-        HashMap<String, Commit> commitSource
-                = Utils.readObject(Main.cS(), HashMap.class);
+        CommitStore commitSource = Main.commits();
         HashMap<String, String> pointerSource
                 = Utils.readObject(Main.pS(), HashMap.class);
         String currentPointer = Utils.readObject(Main.cP(), String.class);
@@ -119,8 +177,7 @@ public class UnitTest {
         assertTrue(current.filesinCommit().containsKey("hello.txt"));
         assertTrue(current.filesinCommit().containsKey("world.txt"));
         assertFalse(current.commitMessage().equals("initial commit"));
-        assertTrue(commitSource.keySet().size() == (2));
-        Utils.writeObject(Main.cS(), commitSource);
+        assertTrue(commitSource.size() == 2);
         Utils.writeObject(Main.pS(), pointerSource);
         Utils.writeObject(Main.cP(), currentPointer);
         String[] command3 = new String[2];
@@ -130,18 +187,16 @@ public class UnitTest {
         commitCommand2[1] = "Round";
         commitCommand2[2] = "Two";
         Main.main(commitCommand2);
-        HashMap<String, Commit> commitSource2
-                = Utils.readObject(Main.cS(), HashMap.class);
+        CommitStore commitSource2 = Main.commits();
         HashMap<String, String> pointerSource2
                 = Utils.readObject(Main.pS(), HashMap.class);
         String currentPointer2 = Utils.readObject(Main.cP(), String.class);
         Commit curr2 = commitSource2.get(pointerSource2.get(currentPointer2));
         assertFalse(curr2.filesinCommit().containsKey("world.txt"));
         assertTrue(curr2.filesinCommit().containsKey("hello.txt"));
-        assertTrue(commitSource2.keySet().size() == 3);
+        assertTrue(commitSource2.size() == 3);
         assertTrue(curr2.commitMessage().equals("Round Two"));
         Main.main("log");
-        Utils.writeObject(Main.cS(), commitSource2);
         Utils.writeObject(Main.pS(), pointerSource2);
         Utils.writeObject(Main.cP(), currentPointer2);
         String[] findCommand1 = new String[4];
@@ -164,14 +219,11 @@ public class UnitTest {
                 = Utils.join(System.getProperty("user.dir"), "hello.txt");
         String contents
                 = Utils.readContentsAsString(reference);
-        HashMap<String, Commit> commitSource
-                = Utils.readObject(Main.cS(), HashMap.class);
-        HashMap<String, String> fileSource
-                = Utils.readObject(Main.fS(), HashMap.class);
+        CommitStore commitSource = Main.commits();
         String currentPointer = Utils.readObject(Main.cP(), String.class);
         HashMap<String, String> pointerSource
                 = Utils.readObject(Main.pS(), HashMap.class);
-        assertTrue(contents.equals(fileSource.get(
+        assertTrue(contents.equals(Main.objects().getAsString(
                 commitSource.get(pointerSource.get(
                         currentPointer)).filesinCommit().get("hello.txt"))));
     }
@@ -210,28 +262,21 @@ public class UnitTest {
         assertTrue(!mhello.equals(Utils.readContentsAsString(hello)));
         Main.main(convertToStringArray("add hello.txt"));
         Main.main(convertToStringArray("commit Round Three"));
-        HashMap<String, Commit> commitSource
-                = Utils.readObject(Main.cS(), HashMap.class);
+        CommitStore commitSource = Main.commits();
         String key = new String();
-        for (String s : commitSource.keySet()) {
+        for (String s : commitSource.ids()) {
             if (commitSource.get(s).commitMessage().equals("Round Two")) {
                 key = s;
             }
         }
-        Utils.writeObject(Main.cS(), commitSource);
         Main.main(convertToStringArray("checkout " + key + " -- hello.txt"));
-        HashMap<String, Commit> commitSource2
-                = Utils.readObject(Main.cS(), HashMap.class);
+        CommitStore commitSource2 = Main.commits();
         HashMap<String, String> pointerSource
                 = Utils.readObject(Main.pS(), HashMap.class);
         String currentPointer = Utils.readObject(Main.cP(), String.class);
-        HashMap<String, String> fileSource
-                = Utils.readObject(Main.fS(), HashMap.class);
         String compare = Utils.readContentsAsString(hello);
         assertEquals(mhello, compare);
-        Utils.writeObject(Main.cS(), commitSource2);
         Utils.writeObject(Main.pS(), pointerSource);
-        Utils.writeObject(Main.fS(), fileSource);
         Utils.restrictedDelete("hello.txt");
         Utils.restrictedDelete("world.txt");
     }
@@ -259,6 +304,1032 @@ public class UnitTest {
 
     }
 
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testAddDirectory() throws IOException {
+        Main.main("init");
+        File sub = new File("sub");
+        sub.mkdir();
+        Utils.writeContents(Utils.join(sub, "b.txt"), "b");
+        Main.main("add", ".");
+        HashMap<String, String> staged =
+                Utils.readObject(Main.fSHA1(), HashMap.class);
+        assertTrue(staged.containsKey("sub/b.txt"));
+        for (String path : staged.keySet()) {
+            assertFalse(path, path.startsWith(".gitlet"));
+        }
+        Utils.join(sub, "b.txt").delete();
+        sub.delete();
+    }
+
+    @Test
+    public void testObjectStoreFanOut() throws IOException {
+        File root = tempDir("objects");
+        ObjectStore store = new ObjectStore(root);
+        byte[] contents = "hello".getBytes();
+        String id = Utils.sha1(contents);
+        store.put(id, contents);
+        assertTrue(Utils.join(root, id.substring(0, 2),
+                id.substring(2)).isFile());
+        assertTrue(store.contains(id));
+        assertEquals("hello", store.getAsString(id));
+    }
+
+    @Test
+    public void testMappedFile() throws IOException {
+        File file = new File(tempDir("mapped"), "mapped.log");
+        byte[] data = new byte[100];
+        for (int i = 0; i < data.length; i += 1) {
+            data[i] = (byte) i;
+        }
+        Utils.writeContents(file, data);
+        MappedFile mapped = new MappedFile(file, 16, 4);
+        for (int offset = 0; offset < 92; offset += 1) {
+            ByteBuffer slice = mapped.slice(offset, 8);
+            for (int i = 0; i < 8; i += 1) {
+                assertEquals(offset + i, slice.get(i));
+            }
+        }
+        assertEquals(ByteBuffer.wrap(data, 10, 60),
+                     mapped.slice(10, 60));
+        byte[] more = Arrays.copyOf(data, 120);
+        more[110] = 42;
+        Utils.writeContents(file, more);
+        assertEquals(42, mapped.slice(110, 1).get(0));
+    }
+
+    @Test
+    public void testMergeBase() throws IOException {
+        File dir = tempDir("commits");
+        CommitStore store = newCommitStore(dir);
+        CommitGraph graph =
+                new CommitGraph(Utils.join(dir, "commit-graph"), store);
+        Commit a1 = graphCommit("a1", ROOT);
+        Commit a2 = graphCommit("a2", a1);
+        Commit b1 = graphCommit("b1", ROOT);
+        Commit b2 = graphCommit("b2", b1);
+        store.put(a1);
+        store.put(a2);
+        store.put(b1);
+        graph.update();
+        store.put(b2);
+        assertEquals(ROOT.sHA1(), graph.mergeBase(a2.sHA1(), b2.sHA1()));
+        assertEquals(a1.sHA1(), graph.mergeBase(a2.sHA1(), a1.sHA1()));
+        assertEquals(b2.sHA1(), graph.mergeBase(b2.sHA1(), b2.sHA1()));
+        assertEquals(3, graph.generation(a2.sHA1()));
+        assertEquals(3, graph.generation(b2.sHA1()));
+    }
+
+    /** Returns a commit with message MSG on top of PARENT. */
+    private Commit graphCommit(String msg, Commit parent) {
+        return new Commit(msg, parent, new HashMap<String, String>(),
+                new ArrayList<String>(), null);
+    }
+
+    @Test
+    public void testResolvePrefix() throws IOException {
+        File dir = tempDir("commits");
+        CommitStore store = newCommitStore(dir);
+        Commit last = ROOT;
+        ArrayList<String> ids = new ArrayList<String>();
+        ids.add(last.sHA1());
+        for (int i = 0; i < 300; i += 1) {
+            last = graphCommit("c" + i, last);
+            store.put(last);
+            ids.add(last.sHA1());
+        }
+        CommitStore reopened = new CommitStore(dir, new ObjectStore(dir));
+        for (String id : ids) {
+            assertEquals(id, store.resolve(id.substring(0, 12)));
+            assertEquals(id, reopened.resolve(id));
+        }
+        String id = ids.get(42);
+        String missing = id.substring(0, 39)
+                + (id.charAt(39) == '0' ? '1' : '0');
+        assertNull(reopened.resolve(missing));
+        try {
+            reopened.resolve(id.substring(0, 1));
+            fail("one digit should not identify a commit");
+        } catch (GitletException excp) {
+            assertTrue(excp.getMessage().contains("ambiguous"));
+        }
+    }
+
+    @Test
+    public void testMessageIndex() throws IOException {
+        File dir = tempDir("commits");
+        CommitStore store = newCommitStore(dir);
+        MessageIndex index =
+                new MessageIndex(Utils.join(dir, "messages"), store);
+        Commit a = graphCommit("same", ROOT);
+        Commit b = graphCommit("other", a);
+        Commit d = graphCommit("same", b);
+        store.put(a);
+        index.update();
+        store.put(b);
+        store.put(d);
+        assertEquals(Arrays.asList(a.sHA1(), d.sHA1()), index.find("same"));
+        assertEquals(Arrays.asList(b.sHA1()), index.find("other"));
+        assertTrue(index.find("missing").isEmpty());
+        MessageIndex reopened =
+                new MessageIndex(Utils.join(dir, "messages"), store);
+        assertEquals(Arrays.asList(a.sHA1(), d.sHA1()),
+                reopened.find("same"));
+    }
+
+    @Test
+    public void testCommitHeaders() throws IOException {
+        File dir = tempDir("commits");
+        CommitStore store = newCommitStore(dir);
+        CommitHeaders headers =
+                new CommitHeaders(Utils.join(dir, "headers"), store);
+        Commit child = graphCommit("a longer message", ROOT);
+        headers.update();
+        store.put(child);
+        headers.update();
+        PrintStream stdout = System.out;
+        ByteArrayOutputStream printed = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(printed, true));
+        try {
+            ROOT.logOutput();
+            child.logOutput();
+        } finally {
+            System.setOut(stdout);
+        }
+        assertEquals(printed.toString(),
+                headers.logEntry(0) + headers.logEntry(1));
+    }
+
+    @Test
+    public void testCommitCodec() throws IOException {
+        ObjectStore objects = new ObjectStore(tempDir("objects"));
+        Commit root = new Commit("initial commit", null, null, null,
+                objects);
+        HashMap<String, String> staged = new HashMap<String, String>();
+        staged.put("src/gitlet/Main.java", Utils.sha1("main"));
+        staged.put("src/gitlet/Utils.java", Utils.sha1("utils"));
+        staged.put("src/Makefile", Utils.sha1("make"));
+        staged.put("caf\u00e9.txt", Utils.sha1("coffee"));
+        Commit child = new Commit("second", root, staged,
+                new ArrayList<String>(), objects);
+        for (Commit commit : new Commit[] { root, child }) {
+            Commit copy = CommitCodec.decode(
+                    ByteBuffer.wrap(CommitCodec.encode(commit)), objects);
+            assertEquals(commit.sHA1(), copy.sHA1());
+            assertEquals(commit.commitMessage(), copy.commitMessage());
+            assertEquals(commit.commitTime(), copy.commitTime());
+            assertEquals(commit.count(), copy.count());
+            assertEquals(commit.parents(), copy.parents());
+            assertEquals(commit.filesinCommit(), copy.filesinCommit());
+        }
+        assertEquals(staged, child.filesinCommit());
+        assertEquals(Utils.sha1("make"), child.blob("src/Makefile"));
+        assertNull(child.blob("src/gitlet"));
+    }
+
+    @Test
+    public void testTreeSharing() throws IOException {
+        ObjectStore objects = new ObjectStore(tempDir("objects"));
+        HashMap<String, String> files = new HashMap<String, String>();
+        files.put("a/b/one", Utils.sha1("1"));
+        files.put("a/b/two", Utils.sha1("2"));
+        files.put("c/three", Utils.sha1("3"));
+        files.put("top", Utils.sha1("top"));
+        String before = Tree.build(objects, files);
+        HashMap<String, String> changes = new HashMap<String, String>();
+        changes.put("c/three", Utils.sha1("new"));
+        changes.put("a/b/two", null);
+        changes.put("d/four", Utils.sha1("4"));
+        String after = Tree.update(objects, before, changes);
+        files.putAll(changes);
+        files.remove("a/b/two");
+        assertEquals(files, Tree.flatten(objects, after));
+        assertEquals(after, Tree.build(objects, files));
+        HashMap<String, String[]> diff = new HashMap<String, String[]>();
+        Tree.diff(objects, before, after, diff);
+        assertEquals(3, diff.size());
+        assertNull(diff.get("a/b/two")[1]);
+        assertNull(diff.get("d/four")[0]);
+        assertEquals(Utils.sha1("new"), diff.get("c/three")[1]);
+        changes.clear();
+        for (String path : files.keySet()) {
+            changes.put(path, null);
+        }
+        assertEquals(Tree.EMPTY, Tree.update(objects, after, changes));
+    }
+
+    @Test
+    public void testDiff() {
+        int[] a = {1, 2, 3, 4, 5, 6};
+        int[] b = {1, 7, 3, 4, 6, 8};
+        List<Diff.Edit> edits = Diff.diff(a, b);
+        assertEquals(3, edits.size());
+        assertEquals(1, edits.get(0).beginA());
+        assertEquals(2, edits.get(0).endA());
+        assertEquals(4, edits.get(1).beginA());
+        assertEquals(5, edits.get(1).endA());
+        assertEquals(4, edits.get(1).endB());
+        assertEquals(6, edits.get(2).beginA());
+        assertEquals(5, edits.get(2).beginB());
+        assertEquals(6, edits.get(2).endB());
+    }
+
+    @Test
+    public void testThreeWayMerge() throws IOException {
+        Lines base = new Lines("a\nb\nc\nd\ne\n".getBytes());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertFalse(new ThreeWayMerge(base,
+                new Lines("A\nb\nc\nd\ne\n".getBytes()),
+                new Lines("a\nb\nc\nd\nE\nf".getBytes())).write(out));
+        assertEquals("A\nb\nc\nd\nE\nf", out.toString());
+        out.reset();
+        assertTrue(new ThreeWayMerge(base,
+                new Lines("a\nB\nc\nd\ne\n".getBytes()),
+                new Lines("a\nX\nY\nd\ne\n".getBytes())).write(out));
+        assertEquals("a\n<<<<<<< HEAD\nB\nc\n=======\nX\nY\n>>>>>>>\n"
+                + "d\ne\n", out.toString());
+    }
+
+    @Test
+    public void testUnifiedDiff() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new UnifiedDiff(out).write("f",
+                ByteBuffer.wrap("1\n2\n3\n4\n5\n6\n7\n8\n9\n".getBytes()),
+                ByteBuffer.wrap("1\n2\n3\n4\nfive\n6\n7\n8\n9"
+                                .getBytes()));
+        assertEquals("diff --git a/f b/f\n--- a/f\n+++ b/f\n"
+                + "@@ -2,8 +2,8 @@\n 2\n 3\n 4\n-5\n+five\n 6\n 7\n 8\n"
+                + "-9\n+9\n\\ No newline at end of file\n", out.toString());
+        out.reset();
+        new UnifiedDiff(out).write("g", null,
+                ByteBuffer.wrap("a\n".getBytes()));
+        assertEquals("diff --git a/g b/g\n--- /dev/null\n+++ b/g\n"
+                + "@@ -0,0 +1 @@\n+a\n", out.toString());
+    }
+
+    @Test
+    public void testGarbageCollector() throws IOException {
+        File dir = tempDir("gc");
+        ObjectStore objects = new ObjectStore(Utils.join(dir, "objects"));
+        CommitStore commits = new CommitStore(dir,
+                objects);
+        commits.create();
+        HashMap<String, String> staged = new HashMap<String, String>();
+        for (String name : new String[] { "a/one", "a/two", "three" }) {
+            staged.put(name, Utils.sha1(name));
+            objects.put(Utils.sha1(name), name.getBytes());
+        }
+        Commit root = new Commit("initial commit", null, null, null,
+                objects);
+        commits.put(root);
+        commits.put(new Commit("files", root, staged,
+                new ArrayList<String>(), objects));
+        objects.put(Utils.sha1("lost"), "lost".getBytes());
+        objects.put(Utils.sha1("kept"), "kept".getBytes());
+        for (String id : objects.ids()) {
+            objects.file(id).setLastModified(0);
+        }
+        long[] freed = new GarbageCollector(objects, commits)
+            .collect(Arrays.asList(Utils.sha1("kept")));
+        assertEquals(1, freed[0]);
+        assertFalse(objects.contains(Utils.sha1("lost")));
+        assertEquals(6, objects.ids().length);
+    }
+
+    @Test
+    public void testReachability() throws IOException {
+        File dir = tempDir("commits");
+        CommitStore store = newCommitStore(dir);
+        CommitGraph graph =
+                new CommitGraph(Utils.join(dir, "commit-graph"), store);
+        Reachability reach =
+                new Reachability(Utils.join(dir, "bitmaps"), store, graph);
+        ArrayList<Commit> commits = new ArrayList<Commit>();
+        commits.add(ROOT);
+        Random random = new Random(42);
+        for (int i = 1; i < 600; i += 1) {
+            Commit parent = commits.get(Math.max(0, i - 1 - random.nextInt(3)));
+            Commit commit = graphCommit("c" + i, parent);
+            if (i % 7 == 0) {
+                commit = new Commit("m" + i, parent,
+                        commits.get(random.nextInt(i)),
+                        new HashMap<String, String>(),
+                        new ArrayList<String>(), null);
+            }
+            commits.add(commit);
+            store.put(commit);
+            if (i % 250 == 0) {
+                graph.update();
+                reach.update();
+            }
+        }
+        for (int t = 0; t < 200; t += 1) {
+            Commit a = commits.get(random.nextInt(commits.size()));
+            Commit b = commits.get(random.nextInt(commits.size()));
+            HashSet<String> fromA = ancestors(store, a);
+            HashSet<String> fromB = ancestors(store, b);
+            assertEquals(fromB.contains(a.sHA1()),
+                         reach.isAncestor(a.sHA1(), b.sHA1()));
+            int ahead = 0;
+            for (String id : fromA) {
+                ahead += fromB.contains(id) ? 0 : 1;
+            }
+            assertEquals(ahead, reach.aheadBehind(a.sHA1(), b.sHA1())[0]);
+        }
+        Bitmap bitmap = new Bitmap();
+        for (int i = 0; i < 200000; i += 3) {
+            bitmap.add(i < 100000 ? i / 3 : i);
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        bitmap.write(out);
+        Bitmap copy = Bitmap.read(ByteBuffer.wrap(out.toByteArray()));
+        assertEquals(bitmap.cardinality(), copy.cardinality());
+        assertEquals(0, bitmap.andNotCardinality(copy));
+        assertEquals(0, copy.andNotCardinality(bitmap));
+    }
+
+    /** Returns the ids of COMMIT and its ancestors, found by following
+     * parents through STORE.
+     * @param store : Commit store holding the commits.
+     * @param commit : A stored commit.
+     * */
+    private HashSet<String> ancestors(CommitStore store, Commit commit) {
+        HashSet<String> result = new HashSet<String>();
+        ArrayList<String> pending = new ArrayList<String>();
+        pending.add(commit.sHA1());
+        while (!pending.isEmpty()) {
+            String id = pending.remove(pending.size() - 1);
+            if (result.add(id)) {
+                pending.addAll(store.get(id).parents());
+            }
+        }
+        return result;
+    }
+
+    @Test
+    public void testCompressedObjects() throws IOException {
+        ObjectStore objects = new ObjectStore(tempDir("objects"));
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 1000; i += 1) {
+            text.append("line ").append(i).append('\n');
+        }
+        byte[] noise = new byte[10000];
+        new Random(7).nextBytes(noise);
+        byte[][] contents = {
+            text.toString().getBytes(), noise, "tiny".getBytes()
+        };
+        byte[] codecs = { Codec.DEFLATE_ID, Codec.NONE_ID, Codec.NONE_ID };
+        for (int k = 0; k < contents.length; k += 1) {
+            String id = Utils.sha1(contents[k]);
+            objects.put(id, contents[k]);
+            assertEquals(codecs[k], Utils.readContents(objects.file(id))[0]);
+            assertArrayEquals(contents[k], objects.get(id));
+            ByteBuffer mapped = objects.map(id);
+            byte[] bytes = new byte[mapped.remaining()];
+            mapped.get(bytes);
+            assertArrayEquals(contents[k], bytes);
+            File copy = new File(tempDir("copy"), "copy");
+            objects.copyTo(id, copy);
+            assertArrayEquals(contents[k], Utils.readContents(copy));
+        }
+        assertTrue(objects.file(Utils.sha1(contents[0])).length()
+                   < contents[0].length / 2);
+        objects.level(0);
+        File file = new File(tempDir("text"), "text");
+        Utils.writeContents(file, text.toString() + "more");
+        String id = objects.put(file);
+        assertEquals(Codec.NONE_ID, Utils.readContents(objects.file(id))[0]);
+    }
+
+    @Test
+    public void testDelta() {
+        Random random = new Random(3);
+        byte[] base = new byte[5000];
+        random.nextBytes(base);
+        for (int trial = 0; trial < 50; trial += 1) {
+            ByteArrayOutputStream target = new ByteArrayOutputStream();
+            for (int at = 0; at < base.length; ) {
+                int n = Math.min(random.nextInt(400), base.length - at);
+                if (random.nextInt(4) == 0) {
+                    byte[] inserted = new byte[random.nextInt(50)];
+                    random.nextBytes(inserted);
+                    target.writeBytes(inserted);
+                } else {
+                    target.write(base, at, n);
+                }
+                at += n;
+            }
+            byte[] expected = target.toByteArray();
+            byte[] delta = Delta.create(base, expected);
+            assertArrayEquals(expected,
+                              Delta.apply(base, ByteBuffer.wrap(delta)));
+        }
+        byte[] edited = base.clone();
+        edited[2500] += 1;
+        assertTrue(Delta.create(base, edited).length < 100);
+    }
+
+    @Test
+    public void testRepack() throws IOException {
+        File dir = tempDir("repack");
+        ObjectStore objects = new ObjectStore(Utils.join(dir, "objects"));
+        CommitStore commits = new CommitStore(dir, objects);
+        commits.create();
+        Commit parent = new Commit("initial commit", null, null, null,
+                objects);
+        commits.put(parent);
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 2000; i += 1) {
+            text.append("line ").append(i).append('\n');
+        }
+        ArrayList<byte[]> versions = new ArrayList<byte[]>();
+        for (int v = 0; v < 5; v += 1) {
+            text.append("version ").append(v).append('\n');
+            byte[] contents = text.toString().getBytes();
+            String id = Utils.sha1(contents);
+            objects.put(id, contents);
+            versions.add(contents);
+            HashMap<String, String> files = new HashMap<String, String>();
+            files.put("dir/file.txt", id);
+            parent = new Commit("version " + v, parent, files,
+                                new ArrayList<String>(), objects);
+            commits.put(parent);
+        }
+        objects.put(Utils.sha1("lost"), "lost".getBytes());
+        int[] packed = new Repacker(objects, commits)
+            .repack(new HashMap<String, String>());
+        assertEquals(1, packed[2]);
+        assertEquals(4, packed[1]);
+        assertEquals(Arrays.asList(Utils.sha1("lost")),
+                     Arrays.asList(objects.ids()));
+        File copy = new File(dir, "copy");
+        for (byte[] contents : versions) {
+            assertArrayEquals(contents, objects.get(Utils.sha1(contents)));
+            objects.copyTo(Utils.sha1(contents), copy);
+            assertArrayEquals(contents, Utils.readContents(copy));
+        }
+        assertEquals(versions.get(0).length,
+                     objects.map(Utils.sha1(versions.get(0))).remaining());
+        File pack = objects.packs().get(0).file();
+        assertTrue(pack.length() < versions.get(4).length);
+        new Repacker(objects, commits).repack(new HashMap<String, String>());
+        assertTrue(pack.exists());
+        HashMap<String, String> staged = new HashMap<String, String>();
+        staged.put("new", Utils.sha1("new"));
+        objects.put(Utils.sha1("new"), "new".getBytes());
+        new Repacker(objects, commits).repack(staged);
+        assertFalse(pack.exists());
+        assertEquals(1, objects.packs().size());
+        assertEquals("new", objects.getAsString(Utils.sha1("new")));
+        assertTrue(objects.contains(Utils.sha1(versions.get(2))));
+    }
+
+    @Test
+    public void testIncrementalCheckout() throws IOException {
+        File dir = tempDir("checkout");
+        File work = Utils.join(dir, "work");
+        ObjectStore objects = new ObjectStore(Utils.join(dir, "objects"));
+        StatCache stat = new StatCache(Utils.join(dir, "index"), work);
+        HashMap<String, String> files = new HashMap<String, String>();
+        for (int i = 0; i < 20; i += 1) {
+            files.put("d" + (i % 3) + "/f" + i, "v1 " + i);
+        }
+        files.put("gone", "old");
+        HashMap<String, String> changed = new HashMap<String, String>(files);
+        changed.put("d0/f0", "v2 0");
+        changed.put("d1/new", "added");
+        changed.remove("gone");
+        Commit from = checkoutCommit(objects, files);
+        Commit to = checkoutCommit(objects, changed);
+        for (Map.Entry<String, String> file : files.entrySet()) {
+            File f = Utils.join(work, file.getKey());
+            f.getParentFile().mkdirs();
+            Utils.writeContents(f, file.getValue());
+            f.setLastModified(0);
+        }
+        Utils.writeContents(Utils.join(work, "d2/f2"), "local edit");
+        assertEquals(4, new Checkout(objects, stat, work).run(from, to));
+        for (Map.Entry<String, String> file : changed.entrySet()) {
+            File f = Utils.join(work, file.getKey());
+            assertEquals(file.getValue(), Utils.readContentsAsString(f));
+            assertEquals(!Arrays.asList("d0/f0", "d1/new", "d2/f2")
+                         .contains(file.getKey()), f.lastModified() == 0);
+        }
+        assertFalse(Utils.join(work, "gone").exists());
+        Utils.writeContents(Utils.join(work, "gone"), "untracked");
+        try {
+            new Checkout(objects, stat, work).run(to, from);
+            fail("untracked file overwritten");
+        } catch (GitletException excp) {
+            assertEquals("v2 0", Utils.readContentsAsString(
+                    Utils.join(work, "d0/f0")));
+        }
+        File other = Utils.join(dir, "other");
+        Utils.join(other, "node_modules").mkdirs();
+        Utils.writeContents(Utils.join(other, IgnoreMatcher.FILE),
+                            "node_modules\n");
+        Utils.writeContents(Utils.join(other, "node_modules/x.js"), "mine");
+        HashMap<String, String> modules = new HashMap<String, String>();
+        modules.put("node_modules/x.js", "theirs");
+        new Checkout(objects, new StatCache(Utils.join(dir, "index2"), other),
+                     other).run(checkoutCommit(objects, changed),
+                                checkoutCommit(objects, modules));
+        assertEquals("theirs", Utils.readContentsAsString(
+                Utils.join(other, "node_modules/x.js")));
+    }
+
+    /** Returns a commit of FILES, a map from path to contents, whose
+     * blobs are put in OBJECTS.
+     * @param objects : Object store for the blobs and trees.
+     * @param files : Map from path to contents.
+     * */
+    private Commit checkoutCommit(ObjectStore objects,
+                                  Map<String, String> files) {
+        HashMap<String, String> blobs = new HashMap<String, String>();
+        for (Map.Entry<String, String> file : files.entrySet()) {
+            String id = Utils.sha1(file.getValue());
+            objects.put(id, file.getValue().getBytes());
+            blobs.put(file.getKey(), id);
+        }
+        return new Commit("files", new Commit("initial commit", null, null,
+                null, objects), blobs, new ArrayList<String>(), objects);
+    }
+
+    @Test
+    public void testRepositories() throws IOException {
+        File one = tempDir("one");
+        File two = tempDir("two");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Repository first = Repository.init(one, new PrintStream(out));
+        Repository second = Repository.init(two, new PrintStream(out));
+        Utils.writeContents(Utils.join(one, "a.txt"), "one");
+        Utils.writeContents(Utils.join(two, "a.txt"), "two");
+        first.add("a.txt");
+        second.add("a.txt");
+        String id = first.commit("first");
+        second.commit("second");
+        first.close();
+        second.close();
+        assertEquals(id, Repository.open(one, System.out).head());
+        Iterator<Commit> log = Repository.open(two, System.out).log();
+        assertEquals("second", log.next().commitMessage());
+        assertEquals("initial commit", log.next().commitMessage());
+        assertFalse(log.hasNext());
+        try {
+            first.checkout("none");
+            fail("checked out a missing branch");
+        } catch (NoSuchBranchException excp) {
+            assertEquals("No such branch exists.", excp.getMessage());
+        }
+        try {
+            Repository.open(Utils.join(one, "a.txt"), System.out);
+            fail("opened a missing repository");
+        } catch (NoRepositoryException excp) {
+            assertEquals(0, out.size());
+        }
+    }
+
+    @Test
+    public void testBatch() throws IOException {
+        assertEquals(Arrays.asList("commit", "added wug", ""),
+                     Arrays.asList(Batch.split(" commit \"added wug\" \"\"")));
+        File dir = tempDir("batch");
+        Utils.writeContents(Utils.join(dir, "wug.txt"), "wug");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        String script = String.join("\n", "# comment", "init", "",
+                "add wug.txt", "commit \"added wug\"", "checkpoint",
+                "rm-branch nope", "branch other", "checkout other");
+        Batch batch = new Batch(new Repository(dir, System.out),
+                                new PrintStream(out));
+        assertEquals(6, batch.run(new BufferedReader(
+                new StringReader(script))));
+        assertEquals("A branch with that name does not exist.\n",
+                     out.toString());
+        Repository repo = Repository.open(dir, System.out);
+        assertEquals("other", repo.currentBranch());
+        assertEquals("added wug", repo.log().next().commitMessage());
+    }
+
+    @Test
+    public void testScriptTester() throws Exception {
+        File dir = tempDir("scripts");
+        Utils.writeContents(Utils.join(dir, "wug.txt"), "wug");
+        File good = Utils.join(dir, "good.in");
+        Utils.writeContents(good, String.join("\n", "> init", "<<<",
+                "+ wug.txt wug.txt", "> add wug.txt", "<<<",
+                "> commit \"added wug\"", "<<<", "D UID \"[a-f0-9]+\"",
+                "> find \"added wug\"", "${UID}", "<<<*",
+                "- wug.txt", "> checkout ${1} -- wug.txt", "<<<",
+                "= wug.txt wug.txt", "* other.txt", ""));
+        File bad = Utils.join(dir, "bad.in");
+        Utils.writeContents(bad, "> status\nwrong\n<<<\n");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ScriptTester tester = new ScriptTester(dir);
+        assertEquals(0, tester.runAll(Arrays.asList(good),
+                                      new PrintStream(out)));
+        assertEquals(1, tester.runAll(Arrays.asList(good, bad),
+                                      new PrintStream(out)));
+        assertTrue(out.toString().contains("FAIL bad.in"));
+    }
+
+    @Test
+    public void testIgnoreMatcher() {
+        IgnoreMatcher ignore = new IgnoreMatcher(Arrays.asList(
+                "# comment", "*.log", "!keep.log", "build/", "/top",
+                "docs/**/*.tmp", "f?[0-9].txt"));
+        assertTrue(ignore.ignored("a.log", false));
+        assertTrue(ignore.ignored("x/y/a.log", false));
+        assertFalse(ignore.ignored("x/keep.log", false));
+        assertTrue(ignore.ignored("src/build", true));
+        assertFalse(ignore.ignored("src/build", false));
+        assertTrue(ignore.ignored("top", false));
+        assertFalse(ignore.ignored("x/top", false));
+        assertTrue(ignore.ignored("docs/a/b/c.tmp", false));
+        assertTrue(ignore.ignored("docs/c.tmp", false));
+        assertTrue(ignore.ignored("d/fa1.txt", false));
+        assertFalse(ignore.ignored("fab.txt", false));
+        assertFalse(new IgnoreMatcher(new ArrayList<String>())
+                    .ignored("a.log", false));
+        IgnoreMatcher modules = new IgnoreMatcher(Arrays.asList(
+                "node_modules", "!*.js"));
+        assertTrue(modules.ignored("node_modules/x.js", false));
+        assertTrue(modules.ignored("a/node_modules/b/c.js", false));
+        assertFalse(modules.matches("node_modules/x.js", false));
+        assertFalse(modules.ignored("src/x.js", false));
+        IgnoreMatcher inside = new IgnoreMatcher(Arrays.asList(
+                "foo/**", "!foo/keep"));
+        assertFalse(inside.ignored("foo", true));
+        assertTrue(inside.ignored("foo/x", false));
+        assertTrue(inside.ignored("foo/a/b", true));
+        assertFalse(inside.ignored("foo/keep", false));
+        assertFalse(inside.ignored("bar/foo/x", false));
+    }
+
+    @Test
+    public void testFileScanner() throws IOException {
+        File dir = tempDir("scan");
+        for (String name : new String[] {"a.txt", "b.log", "keep/c.txt",
+                "node_modules/x/y.js", ".gitlet/objects/z"}) {
+            File file = Utils.join(dir, name);
+            file.getParentFile().mkdirs();
+            Utils.writeContents(file, name);
+        }
+        Utils.writeContents(Utils.join(dir, IgnoreMatcher.FILE),
+                            "*.log\nnode_modules/\n");
+        FileScanner scanner =
+            new FileScanner(dir, IgnoreMatcher.read(dir));
+        assertEquals(Arrays.asList(IgnoreMatcher.FILE, "a.txt",
+                                   "keep/c.txt"), scanner.files(dir));
+        assertEquals(Arrays.asList("keep/c.txt"),
+                     scanner.files(Utils.join(dir, "keep")));
+        assertEquals(new ArrayList<String>(),
+                     scanner.files(Utils.join(dir, "node_modules/x")));
+        Utils.writeContents(Utils.join(dir, "keep/x.txt"), "x");
+        FileScanner inside = new FileScanner(dir, new IgnoreMatcher(
+                Arrays.asList("keep/**", "!keep/c.txt")));
+        assertEquals(Arrays.asList("keep/c.txt"),
+                     inside.files(Utils.join(dir, "keep")));
+    }
+
+    @Test
+    public void testDaemonRequest() throws Exception {
+        File dir = tempDir("daemon");
+        Repository repo = Repository.init(dir, System.out);
+        Utils.writeContents(Utils.join(dir, "a.txt"), "a");
+        Daemon daemon = new Daemon(repo);
+        Thread server = new Thread(() -> {
+            try {
+                daemon.serve();
+            } catch (IOException excp) {
+                throw new RuntimeException(excp);
+            }
+        });
+        server.start();
+        while (!Daemon.serving(repo.dir())) {
+            Thread.sleep(10);
+        }
+        assertTrue(Daemon.forward(repo.dir(), "add", "a.txt"));
+        assertTrue(Daemon.forward(repo.dir(), "commit", "line one\ntwo"));
+        try {
+            Repository.open(dir, System.out);
+            fail("opened a repository a daemon serves");
+        } catch (GitletException excp) {
+            assertEquals("A daemon is serving this repository.",
+                         excp.getMessage());
+        }
+        try {
+            new Daemon(repo).serve();
+            fail("started a second daemon");
+        } catch (GitletException excp) {
+            assertTrue(Daemon.serving(repo.dir()));
+        }
+        assertTrue(Daemon.forward(repo.dir(), Daemon.SHUTDOWN));
+        server.join();
+        assertEquals("line one\ntwo", Repository.open(dir, System.out)
+                     .log().next().commitMessage());
+    }
+
+    @Test
+    public void testHasher() throws IOException {
+        File dir = tempDir("hasher");
+        ArrayList<File> files = new ArrayList<File>();
+        for (int i = 0; i < 5 * Hasher.THRESHOLD + 3; i += 1) {
+            File file = Utils.join(dir, "f" + i);
+            Utils.writeContents(file, "contents " + i);
+            files.add(file);
+        }
+        String[] hashes = new Hasher(null).hash(files);
+        for (int i = 0; i < files.size(); i += 1) {
+            assertEquals(Utils.sha1("contents " + i), hashes[i]);
+        }
+        ObjectStore store = new ObjectStore(Utils.join(dir, "objects"));
+        assertEquals(Arrays.asList(hashes),
+                     Arrays.asList(new Hasher(store).hash(files)));
+        for (int i = 0; i < files.size(); i += 1) {
+            assertEquals("contents " + i, store.getAsString(hashes[i]));
+        }
+    }
+
+    @Test
+    public void testPutFile() throws IOException {
+        File dir = tempDir("put");
+        byte[] contents = new byte[3 * Utils.BUFFER_SIZE + 17];
+        new Random(7).nextBytes(contents);
+        for (int i = 0; i < 256; i += 1) {
+            contents[i] = (byte) i;
+        }
+        contents[300] = '\r';
+        contents[301] = '\n';
+        File file = Utils.join(dir, "binary");
+        Utils.writeContents(file, contents);
+        ObjectStore store = new ObjectStore(Utils.join(dir, "objects"));
+        String id = store.put(file);
+        assertEquals(Utils.sha1(contents), id);
+        assertTrue(Arrays.equals(contents, store.get(id)));
+        assertEquals(id, store.put(file));
+        assertEquals(1, store.ids().length);
+    }
+
+    @Test
+    public void testCopyTo() throws IOException {
+        File dir = tempDir("copy");
+        ObjectStore store = new ObjectStore(Utils.join(dir, "objects"));
+        byte[] random = new byte[2 * Utils.BUFFER_SIZE + 5];
+        new Random(8).nextBytes(random);
+        File source = Utils.join(dir, "random");
+        Utils.writeContents(source, random);
+        String id = store.put(source);
+        assertEquals(Codec.NONE_ID,
+                     Utils.readContents(store.file(id))[0]);
+        File target = Utils.join(dir, "target");
+        Utils.writeContents(target, new byte[4 * Utils.BUFFER_SIZE]);
+        store.copyTo(id, target);
+        assertTrue(Arrays.equals(random, Utils.readContents(target)));
+        String text = "text ".repeat(Utils.BUFFER_SIZE);
+        Utils.writeContents(source, text);
+        store.copyTo(store.put(source), target);
+        assertEquals(text, Utils.readContentsAsString(target));
+    }
+
+    @Test
+    public void testFreshen() throws IOException {
+        File dir = tempDir("freshen");
+        ObjectStore store = new ObjectStore(Utils.join(dir, "objects"));
+        String id = Utils.sha1("old");
+        store.put(id, "old".getBytes());
+        store.file(id).setLastModified(0);
+        store.put(id, "old".getBytes());
+        assertTrue(store.file(id).lastModified() > 0);
+        File file = Utils.join(dir, "old.txt");
+        Utils.writeContents(file, "old");
+        store.file(id).setLastModified(0);
+        assertEquals(id, store.put(file));
+        assertTrue(store.file(id).lastModified() > 0);
+        store.file(id).setLastModified(0);
+        assertTrue(new Hasher(store).done(id));
+        assertTrue(store.file(id).lastModified() > 0);
+        assertFalse(store.freshen(Utils.sha1("missing")));
+    }
+
+    @Test
+    public void testRepackBigObject() throws IOException {
+        File dir = tempDir("repack");
+        ObjectStore objects = new ObjectStore(Utils.join(dir, "objects"));
+        CommitStore commits = new CommitStore(dir, objects);
+        commits.create();
+        Commit parent = new Commit("initial commit", null, null, null,
+                objects);
+        commits.put(parent);
+        byte[] small = "small".getBytes();
+        byte[] big = new byte[5000];
+        new Random(7).nextBytes(big);
+        HashMap<String, String> files = new HashMap<String, String>();
+        files.put("small", Utils.sha1(small));
+        files.put("big", Utils.sha1(big));
+        objects.put(Utils.sha1(small), small);
+        objects.put(Utils.sha1(big), big);
+        commits.put(new Commit("files", parent, files,
+                               new ArrayList<String>(), objects));
+        int[] packed = new Repacker(objects, commits, 1000)
+            .repack(new HashMap<String, String>());
+        assertEquals(1, packed[2]);
+        assertEquals(Arrays.asList(Utils.sha1(big)),
+                     Arrays.asList(objects.ids()));
+        assertTrue(objects.larger(Utils.sha1(big), 4999));
+        assertFalse(objects.larger(Utils.sha1(big), 5000));
+        assertArrayEquals(big, objects.get(Utils.sha1(big)));
+        new Repacker(objects, commits).repack(new HashMap<String, String>());
+        assertEquals(0, objects.ids().length);
+        new Repacker(objects, commits, 1000)
+            .repack(new HashMap<String, String>());
+        assertEquals(Arrays.asList(Utils.sha1(big)),
+                     Arrays.asList(objects.ids()));
+        assertArrayEquals(big, objects.get(Utils.sha1(big)));
+    }
+
+    @Test
+    public void testPackRollover() throws IOException {
+        File dir = tempDir("pack");
+        ObjectStore objects = new ObjectStore(dir);
+        Pack.Writer writer = new Pack.Writer(
+                new File(dir, ObjectStore.PACK_DIR), Deflater.NO_COMPRESSION,
+                250);
+        Random random = new Random(3);
+        ArrayList<byte[]> contents = new ArrayList<byte[]>();
+        for (int i = 0; i < 5; i += 1) {
+            byte[] data = new byte[100];
+            random.nextBytes(data);
+            contents.add(data);
+            writer.add(Utils.sha1(data), null, data);
+        }
+        List<File> written = writer.finish();
+        assertEquals(3, written.size());
+        for (Pack pack : objects.packs()) {
+            assertTrue(pack.file().length() <= 250);
+        }
+        for (byte[] data : contents) {
+            assertArrayEquals(data, objects.get(Utils.sha1(data)));
+        }
+    }
+
+    @Test
+    public void testDateFormatThreads() throws Exception {
+        ZonedDateTime time = ZonedDateTime.of(2026, 10, 18, 16, 11, 35, 0,
+                                              ZoneOffset.UTC);
+        String expected = Commit.DATE_FORMAT.format(time);
+        assertTrue(expected.matches("\\S+ \\S+ 18 16:11:35 2026 \\+0000"));
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        ArrayList<Future<Boolean>> results = new ArrayList<Future<Boolean>>();
+        for (int t = 0; t < 8; t += 1) {
+            results.add(pool.submit(() -> {
+                for (int i = 0; i < 2000; i += 1) {
+                    if (!Commit.DATE_FORMAT.format(time).equals(expected)) {
+                        return false;
+                    }
+                }
+                return true;
+            }));
+        }
+        for (Future<Boolean> result : results) {
+            assertTrue(result.get());
+        }
+        pool.shutdown();
+    }
+
+    @Test
+    public void testCommitStoreTornJournal() throws IOException {
+        File dir = tempDir("commits");
+        CommitStore store = newCommitStore(dir);
+        Commit a = graphCommit("a", ROOT);
+        Commit b = graphCommit("b", a);
+        store.put(a);
+        try (FileOutputStream out = new FileOutputStream(
+                Utils.join(dir, "commits.idx"), true)) {
+            out.write(new byte[] {1, 2, 3, 4, 5});
+        }
+        store = new CommitStore(dir, new ObjectStore(dir));
+        assertEquals(2, store.size());
+        store.put(b);
+        store = new CommitStore(dir, new ObjectStore(dir));
+        assertEquals(3, store.size());
+        assertEquals(b.sHA1(), store.idAt(2));
+        assertTrue(store.contains(b.sHA1()));
+        assertEquals("b", store.get(b.sHA1()).commitMessage());
+    }
+
+    @Test
+    public void testMapLargeCompressed() throws IOException {
+        File dir = tempDir("objects");
+        ObjectStore objects = new ObjectStore(dir);
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; text.length() <= ObjectStore.MAP_IN_MEMORY; i += 1) {
+            text.append("line ").append(i).append('\n');
+        }
+        byte[] contents = text.toString().getBytes();
+        String id = Utils.sha1(contents);
+        objects.put(id, contents);
+        assertTrue(Utils.readContents(objects.file(id))[0]
+                   != Codec.NONE_ID);
+        ByteBuffer mapped = objects.map(id);
+        assertTrue(mapped.isDirect());
+        byte[] bytes = new byte[mapped.remaining()];
+        mapped.get(bytes);
+        assertArrayEquals(contents, bytes);
+        assertEquals(0, dir.list((d, name) -> name.startsWith("tmp-"))
+                     .length);
+    }
+
+    @Test
+    public void testCheckoutFileAndDirectory() throws IOException {
+        File dir = tempDir("checkout");
+        File work = Utils.join(dir, "work");
+        work.mkdirs();
+        ObjectStore objects = new ObjectStore(Utils.join(dir, "objects"));
+        StatCache stat = new StatCache(Utils.join(dir, "index"), work);
+        HashMap<String, String> files = new HashMap<String, String>();
+        files.put("a", "file");
+        Commit file = checkoutCommit(objects, files);
+        files.clear();
+        files.put("a/b", "nested");
+        Commit directory = checkoutCommit(objects, files);
+        Utils.writeContents(Utils.join(work, "a"), "file");
+        new Checkout(objects, stat, work).run(file, directory);
+        assertEquals("nested",
+                     Utils.readContentsAsString(Utils.join(work, "a/b")));
+        new Checkout(objects, stat, work).run(directory, file);
+        assertEquals("file", Utils.readContentsAsString(Utils.join(work, "a")));
+        new Checkout(objects, stat, work).run(file, directory);
+        Utils.writeContents(Utils.join(work, "a/c"), "untracked");
+        try {
+            new Checkout(objects, stat, work).run(directory, file);
+            fail("untracked file in a directory overwritten");
+        } catch (UntrackedFileException excp) {
+            assertTrue(Utils.join(work, "a/b").isFile());
+        }
+        Utils.join(work, "a/c").delete();
+        new Checkout(objects, stat, work).run(directory, file);
+        Utils.writeContents(Utils.join(work, "a"), "untracked");
+        try {
+            new Checkout(objects, stat, work).run(checkoutCommit(
+                    objects, new HashMap<String, String>()), directory);
+            fail("untracked file in the way of a directory overwritten");
+        } catch (UntrackedFileException excp) {
+            assertEquals("untracked",
+                         Utils.readContentsAsString(Utils.join(work, "a")));
+        }
+    }
+
+    @Test
+    public void testCheckpoint() throws IOException {
+        File dir = tempDir("gitlet");
+        File state = Utils.join(dir, "state.txt");
+        Utils.writeContents(state, "old");
+        HashMap<String, byte[]> files = new HashMap<String, byte[]>();
+        files.put("state.txt", "new".getBytes());
+        new Checkpoint(dir).commit(files);
+        assertEquals("new", Utils.readContentsAsString(state));
+        assertFalse(Utils.join(dir, "checkpoint").exists());
+        new Checkpoint(dir).recover();
+        assertEquals("new", Utils.readContentsAsString(state));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testStateStoreWritesOnlyChanges() throws IOException {
+        File dir = tempDir("gitlet");
+        File branches = Utils.join(dir, "branches");
+        File staged = Utils.join(dir, "staged");
+        Utils.writeObject(branches, new HashMap<String, String>());
+        Utils.writeObject(staged, new ArrayList<String>());
+        StateStore state = new StateStore(dir);
+        HashMap<String, String> pointers =
+                state.read(branches, HashMap.class);
+        ArrayList<String> files = state.read(staged, ArrayList.class);
+        staged.delete();
+        pointers.put("master", "abc");
+        state.save(branches, pointers);
+        state.save(staged, files);
+        state.flush(null);
+        assertEquals(pointers, Utils.readObject(branches, HashMap.class));
+        assertFalse(staged.exists());
+    }
+
+    @Test
+    public void testStatCache() throws IOException {
+        File dir = tempDir("work");
+        File index = Utils.join(dir, "index");
+        File wug = Utils.join(dir, "wug.txt");
+        Utils.writeContents(wug, "wug");
+        StatCache cache = new StatCache(index, dir);
+        assertEquals(Utils.sha1("wug"), cache.hash("wug.txt"));
+        cache.save();
+        Utils.writeContents(wug, "not wug");
+        cache = new StatCache(index, dir);
+        assertEquals(Utils.sha1("not wug"), cache.hash("wug.txt"));
+        wug.delete();
+        assertNull(cache.hash("wug.txt"));
+    }
+
     public String[] convertToStringArray(String s) {
         return s.split(" ");
     }
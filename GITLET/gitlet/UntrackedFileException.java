@@ -0,0 +1,14 @@
+package gitlet;
+
+/** Exception indicating that a command would overwrite or delete an
+ *  untracked working file.
+ *  @author Keshav Sharma
+ */
+public class UntrackedFileException extends GitletException {
+
+    /** A UntrackedFileException with MSG as its message. */
+    UntrackedFileException(String msg) {
+        super(msg);
+    }
+
+}